@@ -0,0 +1,166 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import com.aoapps.hodgepodge.util.Tuple2;
+import com.aoapps.net.Path;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import com.semanticcms.core.pages.local.CaptureContext;
+import com.semanticcms.core.pages.local.LocalPageRepository;
+import com.semanticcms.core.pages.local.LruCaptureCache;
+import com.semanticcms.core.pages.local.PageContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Captures pages through {@link LocalPageRepository} against an in-memory stand-in container,
+ * where each include immediately captures a new, empty {@link Page}.  This measures the overhead
+ * of the capture machinery itself.
+ *
+ * <p>Each invocation creates a new stand-in request, included in the measurement, since pages captured during
+ * a request are remembered for the rest of the request.  {@code @Setup(Level.Invocation)} is not used, since
+ * its overhead would dominate the shorter benchmarks.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalPageRepositoryBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  /**
+   * Resolves every path to the same stand-in dispatcher.
+   */
+  private static final class StandInRepository extends LocalPageRepository {
+
+    private final RequestDispatcher dispatcher;
+
+    private StandInRepository(ServletContext servletContext, Path path) {
+      super(servletContext, path);
+      this.dispatcher = StandIns.newRequestDispatcher(
+          (request, response) -> CaptureContext.getCaptureContext(request).setCapturedPage(new Page())
+      );
+    }
+
+    @Override
+    public String toString() {
+      return "stand-in:" + prefix;
+    }
+
+    @Override
+    protected Tuple2<String, RequestDispatcher> getRequestDispatcher(Path path) throws IOException {
+      return new Tuple2<>(prefix + path + ".jspx", dispatcher);
+    }
+  }
+
+  @Param({"PAGE", "META", "BODY"})
+  public CaptureLevel level;
+
+  @Param({"false", "true"})
+  public boolean cached;
+
+  private ServletContext servletContext;
+  private HttpServletResponse response;
+  private LocalPageRepository repository;
+  private Path path;
+  private List<Path> paths;
+
+  @Setup
+  public void setup() throws Exception {
+    servletContext = StandIns.newServletContext();
+    response = StandIns.newResponse();
+    repository = new StandInRepository(servletContext, Path.valueOf("/"));
+    if (cached) {
+      repository.setCaptureCache(new LruCaptureCache());
+    }
+    path = Path.valueOf("/index");
+    paths = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      paths.add(Path.valueOf("/page-" + i));
+    }
+  }
+
+  @Benchmark
+  public Page getPage() throws ServletException, IOException {
+    return PageContext.newPageContext(
+        servletContext,
+        StandIns.newRequest(servletContext),
+        response,
+        () -> repository.getPage(path, level)
+    );
+  }
+
+  /**
+   * Captures the batch one page at a time, for comparison with {@link #getPages()}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void getPageLoop(Blackhole blackhole) throws ServletException, IOException {
+    PageContext.newPageContext(
+        servletContext,
+        StandIns.newRequest(servletContext),
+        response,
+        () -> {
+          for (Path p : paths) {
+            blackhole.consume(repository.getPage(p, level));
+          }
+        }
+    );
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Map<Path, Page> getPages() throws ServletException, IOException {
+    return PageContext.newPageContext(
+        servletContext,
+        StandIns.newRequest(servletContext),
+        response,
+        () -> repository.getPages(paths, level)
+    );
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line, always adding the GC profiler
+ * so allocation rates are reported alongside ops/s.
+ *
+ * <pre>java -jar target/benchmarks.jar [JMH options] [benchmark regexp]</pre>
+ */
+public final class Main {
+
+  /** Make no instances. */
+  private Main() {
+    throw new AssertionError();
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+    } else if (commandLine.shouldList()) {
+      new Runner(commandLine).list();
+    } else {
+      new Runner(
+          new OptionsBuilder()
+              .parent(commandLine)
+              .addProfiler(GCProfiler.class)
+              .build()
+      ).run();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import com.aoapps.hodgepodge.util.Tuple2;
+import com.aoapps.net.Path;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import com.semanticcms.core.pages.local.CaptureContext;
+import com.semanticcms.core.pages.local.LocalPageRepository;
+import com.semanticcms.core.pages.local.PageContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Captures a tree of pages where each include captures its child pages, one at a time, before capturing
+ * its own, as a page that captures its children while being captured would.  Each capture sets up a
+ * subrequest and subresponse, so the allocation rate reported by the GC profiler shows the per-capture
+ * set-up cost.  No capture cache is used, since it would stop the nesting.
+ *
+ * <p>Sibling captures reuse the subrequests and subresponses released by the previous sibling.  Compare
+ * {@code pooled=true} with {@code pooled=false}, which disables pooling through the
+ * {@code com.semanticcms.core.pages.local.CapturePool.maxPooled} system property, to see the allocation
+ * avoided:</p>
+ *
+ * <pre>java -jar target/benchmarks.jar NestedCaptureBenchmark</pre>
+ *
+ * <p>Each invocation creates a new stand-in request, included in the measurement, since pages captured during
+ * a request are remembered for the rest of the request.  {@code @Setup(Level.Invocation)} is not used, since
+ * its overhead would dominate the shorter benchmarks.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestedCaptureBenchmark {
+
+  /**
+   * The number of child pages captured by each page above the deepest level.
+   */
+  private static final int FAN_OUT = 4;
+
+  /**
+   * Resolves each page of the tree to a stand-in dispatcher that first captures the children of the page.
+   */
+  private static final class StandInRepository extends LocalPageRepository {
+
+    private final Map<Path, RequestDispatcher> dispatchers = new HashMap<>();
+
+    private StandInRepository(ServletContext servletContext, Path path, int depth, CaptureLevel level)
+        throws Exception {
+      super(servletContext, path);
+      addPage(servletContext, "/level", depth, level);
+    }
+
+    private void addPage(ServletContext servletContext, String pagePath, int remaining, CaptureLevel level)
+        throws Exception {
+      List<Path> children = new ArrayList<>();
+      if (remaining > 0) {
+        for (int i = 0; i < FAN_OUT; i++) {
+          String childPath = pagePath + '-' + i;
+          addPage(servletContext, childPath, remaining - 1, level);
+          children.add(Path.valueOf(childPath));
+        }
+      }
+      dispatchers.put(
+          Path.valueOf(pagePath),
+          StandIns.newRequestDispatcher((request, response) -> {
+            try {
+              PageContext.newPageContext(servletContext, request, response, () -> {
+                for (Path child : children) {
+                  getPage(child, level);
+                }
+              });
+            } catch (ServletException e) {
+              throw new IOException(e);
+            }
+            CaptureContext.getCaptureContext(request).setCapturedPage(new Page());
+          })
+      );
+    }
+
+    @Override
+    public String toString() {
+      return "stand-in:" + prefix;
+    }
+
+    @Override
+    protected Tuple2<String, RequestDispatcher> getRequestDispatcher(Path path) throws IOException {
+      RequestDispatcher dispatcher = dispatchers.get(path);
+      return dispatcher == null ? null : new Tuple2<>(prefix + path + ".jspx", dispatcher);
+    }
+  }
+
+  /**
+   * The levels of children below the page captured, for 5, 21, or 85 captures per invocation.
+   */
+  @Param({"1", "2", "3"})
+  public int depth;
+
+  @Param({"PAGE", "META"})
+  public CaptureLevel level;
+
+  @Param({"true", "false"})
+  public boolean pooled;
+
+  private ServletContext servletContext;
+  private HttpServletResponse response;
+  private LocalPageRepository repository;
+  private Path path;
+
+  @Setup
+  public void setup() throws Exception {
+    if (!pooled) {
+      // Read once, when first capturing, so set before any capture in this fork
+      System.setProperty("com.semanticcms.core.pages.local.CapturePool.maxPooled", "0");
+    }
+    servletContext = StandIns.newServletContext();
+    response = StandIns.newResponse();
+    repository = new StandInRepository(servletContext, Path.valueOf("/"), depth, level);
+    path = Path.valueOf("/level");
+  }
+
+  @Benchmark
+  public Page getPage() throws ServletException, IOException {
+    return PageContext.newPageContext(
+        servletContext,
+        StandIns.newRequest(servletContext),
+        response,
+        () -> repository.getPage(path, level)
+    );
+  }
+}
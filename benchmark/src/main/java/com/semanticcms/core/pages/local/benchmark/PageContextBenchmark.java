@@ -0,0 +1,174 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import com.semanticcms.core.pages.local.PageContext;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Establishes nested page contexts, alternating between two requests and two responses so every level
+ * binds new values, then looks-up the writer at the innermost level.
+ *
+ * <p>{@link #threadLocals(org.openjdk.jmh.infra.Blackhole)} runs the same nesting against a copy of the
+ * previous layout of one {@link ThreadLocal} per value, for comparison with the current single frame.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageContextBenchmark {
+
+  /**
+   * The layout of {@link PageContext} before the single frame: four separate thread-locals,
+   * saved and restored individually.
+   */
+  private static final class ThreadLocalsLayout {
+
+    private static final ThreadLocal<ServletContext> servletContext = new ThreadLocal<>();
+    private static final ThreadLocal<HttpServletRequest> request = new ThreadLocal<>();
+    private static final ThreadLocal<HttpServletResponse> response = new ThreadLocal<>();
+    private static final ThreadLocal<PrintWriter> out = new ThreadLocal<>();
+
+    private static void newPageContext(
+        ServletContext newServletContext,
+        HttpServletRequest newRequest,
+        HttpServletResponse newResponse,
+        PageContext.PageContextRunnable target
+    ) throws ServletException, IOException {
+      final ServletContext oldServletContext = servletContext.get();
+      final HttpServletRequest oldRequest = request.get();
+      final HttpServletResponse oldResponse = response.get();
+      final PrintWriter oldOut = out.get();
+      try {
+        if (newServletContext != oldServletContext) {
+          servletContext.set(newServletContext);
+        }
+        if (newRequest != oldRequest) {
+          request.set(newRequest);
+        }
+        if (newResponse != oldResponse) {
+          response.set(newResponse);
+          out.set(null);
+        }
+        target.run();
+      } finally {
+        if (newServletContext != oldServletContext) {
+          servletContext.set(oldServletContext);
+        }
+        if (newRequest != oldRequest) {
+          request.set(oldRequest);
+        }
+        if (newResponse != oldResponse) {
+          response.set(oldResponse);
+          out.set(oldOut);
+        }
+      }
+    }
+
+    private static PrintWriter getOut() throws IOException {
+      PrintWriter o = out.get();
+      if (o == null) {
+        HttpServletResponse r = response.get();
+        if (r == null) {
+          throw new IllegalStateException("No page context");
+        }
+        o = r.getWriter();
+        out.set(o);
+      }
+      return o;
+    }
+  }
+
+  @Param({"1", "4", "16"})
+  public int depth;
+
+  private ServletContext servletContext;
+  private final HttpServletRequest[] requests = new HttpServletRequest[2];
+  private final HttpServletResponse[] responses = new HttpServletResponse[2];
+
+  @Setup
+  public void setup() {
+    servletContext = StandIns.newServletContext();
+    for (int i = 0; i < 2; i++) {
+      requests[i] = StandIns.newRequest(servletContext);
+      responses[i] = StandIns.newResponse();
+    }
+  }
+
+  private void nestFrame(int level, Blackhole blackhole) throws ServletException, IOException {
+    if (level == depth) {
+      blackhole.consume(PageContext.getOut());
+    } else {
+      PageContext.newPageContext(
+          servletContext,
+          requests[level & 1],
+          responses[level & 1],
+          () -> nestFrame(level + 1, blackhole)
+      );
+    }
+  }
+
+  @Benchmark
+  public void frame(Blackhole blackhole) throws ServletException, IOException {
+    nestFrame(0, blackhole);
+  }
+
+  private void nestThreadLocals(int level, Blackhole blackhole) throws ServletException, IOException {
+    if (level == depth) {
+      blackhole.consume(ThreadLocalsLayout.getOut());
+    } else {
+      ThreadLocalsLayout.newPageContext(
+          servletContext,
+          requests[level & 1],
+          responses[level & 1],
+          () -> nestThreadLocals(level + 1, blackhole)
+      );
+    }
+  }
+
+  @Benchmark
+  public void threadLocals(Blackhole blackhole) throws ServletException, IOException {
+    nestThreadLocals(0, blackhole);
+  }
+}
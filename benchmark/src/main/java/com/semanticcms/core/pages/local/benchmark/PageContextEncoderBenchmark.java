@@ -0,0 +1,138 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import com.semanticcms.core.pages.local.PageContext;
+import com.semanticcms.core.pages.local.PageContextEncoder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes large text bodies through {@link PageContextEncoder}: mostly plain ASCII,
+ * dense with characters that must be escaped, or mostly non-ASCII, in selected
+ * {@linkplain PageContext.OutputMode output modes}.  Output is discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageContextEncoderBenchmark {
+
+  /**
+   * The kinds of input text.
+   */
+  public enum Input {
+    ASCII("The quick brown fox jumps over the lazy dog, again and again. "),
+    MARKUP("<p class=\"note\">Fish & \"chips\" > 'peas' < gravy</p>\n"),
+    UNICODE("Gr\u00fc\u00dfe aus K\u00f6ln \u2014 caf\u00e9, na\u00efve, \ud83d\ude00 and more. ");
+
+    private final String sample;
+
+    private Input(String sample) {
+      this.sample = sample;
+    }
+  }
+
+  @Param({"ASCII", "MARKUP", "UNICODE"})
+  public Input input;
+
+  @Param({"64", "16384"})
+  public int length;
+
+  @Param({"CONTAINER", "UTF8"})
+  public PageContext.OutputMode outputMode;
+
+  private ServletContext servletContext;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private String text;
+  private char[] chars;
+
+  @Setup
+  public void setup() {
+    servletContext = StandIns.newServletContext();
+    request = StandIns.newRequest(servletContext);
+    response = StandIns.newResponse();
+    StringBuilder sb = new StringBuilder(length + input.sample.length());
+    while (sb.length() < length) {
+      sb.append(input.sample);
+    }
+    sb.setLength(length);
+    if (Character.isHighSurrogate(sb.charAt(length - 1))) {
+      // Do not split a surrogate pair
+      sb.setCharAt(length - 1, ' ');
+    }
+    text = sb.toString();
+    chars = text.toCharArray();
+  }
+
+  @Benchmark
+  public void encodeTextInXhtmlCharSequence() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      PageContextEncoder.encodeTextInXhtml(text);
+    });
+  }
+
+  @Benchmark
+  public void encodeTextInXhtmlChars() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      PageContextEncoder.encodeTextInXhtml(chars);
+    });
+  }
+
+  @Benchmark
+  public void encodeTextInXhtmlAttributeCharSequence() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      PageContextEncoder.encodeTextInXhtmlAttribute(text);
+    });
+  }
+
+  @Benchmark
+  public void encodeTextInXhtmlAttributeChars() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      PageContextEncoder.encodeTextInXhtmlAttribute(chars);
+    });
+  }
+}
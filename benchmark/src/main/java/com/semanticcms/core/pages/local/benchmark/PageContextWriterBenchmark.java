@@ -0,0 +1,178 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import com.semanticcms.core.pages.local.CompiledFormat;
+import com.semanticcms.core.pages.local.PageContext;
+import com.semanticcms.core.pages.local.PageContextWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calls the {@link PageContextWriter} variants many times per page context, as a page emitting
+ * many small fragments would, in each {@linkplain PageContext.OutputMode output mode}.  Output is discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageContextWriterBenchmark {
+
+  private static final int CALLS = 1000;
+
+  private static final CompiledFormat ROW_FORMAT = CompiledFormat.compile("<td id=\"row-%d\">%s</td>");
+
+  @Param({"CONTAINER", "BUFFERED", "UTF8"})
+  public PageContext.OutputMode outputMode;
+
+  private ServletContext servletContext;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private char[] chars;
+
+  @Setup
+  public void setup() {
+    servletContext = StandIns.newServletContext();
+    request = StandIns.newRequest(servletContext);
+    response = StandIns.newResponse();
+    chars = "<div class=\"fragment\">".toCharArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void writeString() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.write("<div class=\"fragment\">");
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void writeChars() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.write(chars, 0, chars.length);
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void writeChar() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.write('>');
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printString() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.print("fragment");
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printInt() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.print(i);
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printLong() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.print(i * 1_000_000_007L);
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printDouble() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.print(i * 0.25);
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printf() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.printf("<td id=\"row-%d\">%s</td>", i, "cell");
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void printfCompiled() throws ServletException, IOException {
+    PageContext.newPageContext(servletContext, request, response, () -> {
+      PageContext.setOutputMode(outputMode);
+      for (int i = 0; i < CALLS; i++) {
+        PageContextWriter.printf(ROW_FORMAT, i, "cell");
+      }
+    });
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * In-memory stand-ins for the servlet container, sufficient to drive captures outside of any container.
+ * Each is a dynamic proxy that keeps attributes in a map and otherwise returns empty values.
+ */
+final class StandIns {
+
+  /** Make no instances. */
+  private StandIns() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The action performed for each include.
+   */
+  @FunctionalInterface
+  interface Include {
+    void include(HttpServletRequest request, HttpServletResponse response) throws IOException;
+  }
+
+  /**
+   * Gets the default return value for methods not otherwise implemented.
+   */
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    if (type == Enumeration.class) {
+      return Collections.emptyEnumeration();
+    }
+    if (type == Map.class) {
+      return Collections.emptyMap();
+    }
+    if (type == Set.class) {
+      return Collections.emptySet();
+    }
+    if (type == List.class || type == Collection.class) {
+      return Collections.emptyList();
+    }
+    return null;
+  }
+
+  /**
+   * Handles the attribute methods shared by the servlet context and request.
+   *
+   * @return  {@code this} when the method is not an attribute method
+   */
+  private static Object attributeMethod(Map<String, Object> attributes, String name, Object[] args) {
+    switch (name) {
+      case "getAttribute":
+        return attributes.get((String) args[0]);
+      case "setAttribute":
+        if (args[1] == null) {
+          attributes.remove((String) args[0]);
+        } else {
+          attributes.put((String) args[0], args[1]);
+        }
+        return null;
+      case "removeAttribute":
+        attributes.remove((String) args[0]);
+        return null;
+      case "getAttributeNames":
+        return Collections.enumeration(attributes.keySet());
+      default:
+        return attributes;
+    }
+  }
+
+  static ServletContext newServletContext() {
+    Map<String, Object> attributes = new HashMap<>();
+    try {
+      File tempDir = Files.createTempDirectory("semanticcms-core-pages-local-benchmark").toFile();
+      tempDir.deleteOnExit();
+      attributes.put(ServletContext.TEMPDIR, tempDir);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    InvocationHandler handler = (proxy, method, args) -> {
+      String name = method.getName();
+      Object result = attributeMethod(attributes, name, args);
+      if (result != attributes) {
+        return result;
+      }
+      switch (name) {
+        case "getContextPath":
+          return "";
+        case "getMajorVersion":
+          return 3;
+        case "getMinorVersion":
+          return 1;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "StandIns.ServletContext";
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    };
+    return (ServletContext) Proxy.newProxyInstance(
+        StandIns.class.getClassLoader(),
+        new Class<?>[]{ServletContext.class},
+        handler
+    );
+  }
+
+  static HttpServletRequest newRequest(ServletContext servletContext) {
+    Map<String, Object> attributes = new HashMap<>();
+    InvocationHandler handler = (proxy, method, args) -> {
+      String name = method.getName();
+      Object result = attributeMethod(attributes, name, args);
+      if (result != attributes) {
+        return result;
+      }
+      switch (name) {
+        case "getServletContext":
+          return servletContext;
+        case "getMethod":
+          return "GET";
+        case "getDispatcherType":
+          return DispatcherType.REQUEST;
+        case "getCharacterEncoding":
+          return "UTF-8";
+        case "getContextPath":
+          return "";
+        case "getServletPath":
+        case "getRequestURI":
+          return "/";
+        case "getScheme":
+          return "https";
+        case "getServerName":
+          return "localhost";
+        case "getServerPort":
+          return 443;
+        case "getLocale":
+          return Locale.ROOT;
+        case "getLocales":
+          return Collections.enumeration(Collections.singleton(Locale.ROOT));
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "StandIns.HttpServletRequest";
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    };
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        StandIns.class.getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class},
+        handler
+    );
+  }
+
+  private static final ServletOutputStream nullOutputStream = new ServletOutputStream() {
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(int b) {
+      // Discard
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      // Discard
+    }
+  };
+
+  /**
+   * Creates a response that discards all output.
+   */
+  static HttpServletResponse newResponse() {
+    return newResponse(new PrintWriter(Writer.nullWriter()));
+  }
+
+  /**
+   * Creates a response that writes to the given writer.
+   */
+  static HttpServletResponse newResponse(PrintWriter writer) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getWriter":
+          return writer;
+        case "getOutputStream":
+          return nullOutputStream;
+        case "getCharacterEncoding":
+          return "UTF-8";
+        case "getContentType":
+          return "application/xhtml+xml;charset=UTF-8";
+        case "getLocale":
+          return Locale.ROOT;
+        case "getBufferSize":
+          return 8192;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "StandIns.HttpServletResponse";
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    };
+    return (HttpServletResponse) Proxy.newProxyInstance(
+        StandIns.class.getClassLoader(),
+        new Class<?>[]{HttpServletResponse.class},
+        handler
+    );
+  }
+
+  static RequestDispatcher newRequestDispatcher(Include include) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "include":
+        case "forward":
+          include.include((HttpServletRequest) args[0], (HttpServletResponse) args[1]);
+          return null;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "StandIns.RequestDispatcher";
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    };
+    return (RequestDispatcher) Proxy.newProxyInstance(
+        StandIns.class.getClassLoader(),
+        new Class<?>[]{RequestDispatcher.class},
+        handler
+    );
+  }
+}
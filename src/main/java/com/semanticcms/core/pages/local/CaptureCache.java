@@ -0,0 +1,179 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.lang.NullArgumentException;
+import com.aoapps.net.Path;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+
+/**
+ * A bounded cache of captured pages, which may be shared by any number of {@link LocalPageRepository}.
+ * Each entry remembers the last-modified time of the resource it was captured from, and is only
+ * returned while the resource remains unchanged.
+ *
+ * <p>Implementations must be thread-safe.</p>
+ *
+ * @see  LocalPageRepository#setCaptureCache(com.semanticcms.core.pages.local.CaptureCache)
+ * @see  LruCaptureCache
+ */
+public interface CaptureCache {
+
+  /**
+   * Identifies one capture by repository prefix, page path, and capture level.
+   */
+  final class Key {
+
+    private final String prefix;
+    private final Path path;
+    private final CaptureLevel level;
+    private final int hash;
+
+    public Key(String prefix, Path path, CaptureLevel level) {
+      this.prefix = NullArgumentException.checkNotNull(prefix, "prefix");
+      this.path = NullArgumentException.checkNotNull(path, "path");
+      this.level = NullArgumentException.checkNotNull(level, "level");
+      int h = prefix.hashCode();
+      h = h * 31 + path.hashCode();
+      h = h * 31 + level.hashCode();
+      this.hash = h;
+    }
+
+    @Override
+    public String toString() {
+      return prefix + path + " @ " + level;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return
+          hash == other.hash
+              && level == other.level
+              && prefix.equals(other.prefix)
+              && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    /**
+     * Gets the prefix of the repository, as returned by {@link LocalPageRepository#getPrefix()}.
+     */
+    public String getPrefix() {
+      return prefix;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public CaptureLevel getLevel() {
+      return level;
+    }
+
+    /**
+     * Gets the key for the same page at a different capture level.
+     */
+    public Key withLevel(CaptureLevel newLevel) {
+      return newLevel == level ? this : new Key(prefix, path, newLevel);
+    }
+  }
+
+  /**
+   * Gets the cached page, or {@code null} when not cached or when the entry was captured
+   * from a different version of the resource.  Stale entries are removed.
+   *
+   * <p>Since {@link CaptureLevel} is hierarchical, a page captured at a higher level than
+   * requested contains everything of the lower level, and is returned in its place.</p>
+   *
+   * <p>Entries captured with an unknown last-modified time cannot be validated, so should only be returned
+   * for a bounded time.</p>
+   *
+   * @param  lastModified  The current last-modified time of the resource the page is captured from,
+   *                       or {@code 0} when unknown.
+   */
+  Page get(Key key, long lastModified);
+
+  /**
+   * Adds a captured page to the cache, possibly evicting others.
+   * Any captures of the same page at lower levels are superseded and may be removed.
+   *
+   * @param  lastModified  The last-modified time of the resource at the time of capture,
+   *                       or {@code 0} when unknown.
+   */
+  void put(Key key, long lastModified, Page page);
+
+  /**
+   * Receives the entries of a cache.
+   *
+   * @see  #forEach(com.semanticcms.core.pages.local.CaptureCache.EntryConsumer)
+   */
+  @FunctionalInterface
+  interface EntryConsumer {
+    void accept(Key key, long lastModified, Page page);
+  }
+
+  /**
+   * Calls the given action for a point-in-time copy of all entries, such as for persisting the cache.
+   * The action is called without holding any locks of the cache.
+   *
+   * @see  CaptureSnapshot
+   */
+  void forEach(EntryConsumer action);
+
+  /**
+   * Removes a single capture from the cache.
+   */
+  void remove(Key key);
+
+  /**
+   * Removes all captures from the cache.
+   */
+  void clear();
+
+  /**
+   * Gets the current number of cached pages.
+   */
+  int size();
+
+  /**
+   * Gets the number of successful calls to {@link #get(com.semanticcms.core.pages.local.CaptureCache.Key, long)}.
+   */
+  long getHits();
+
+  /**
+   * Gets the number of calls to {@link #get(com.semanticcms.core.pages.local.CaptureCache.Key, long)}
+   * that found no entry or a stale entry.
+   */
+  long getMisses();
+}
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2018, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2018, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -25,39 +25,210 @@ package com.semanticcms.core.pages.local;
 
 import com.aoapps.lang.NullArgumentException;
 import com.aoapps.servlet.attribute.ScopeEE;
+import com.semanticcms.core.model.Element;
+import com.semanticcms.core.model.Node;
 import com.semanticcms.core.model.Page;
+import com.semanticcms.core.model.PageRef;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import javax.servlet.ServletRequest;
 
 /**
  * The current capture context.
+ *
+ * <p>When created with a {@link CaptureListener}, the capture is streaming: once each page is captured, its
+ * element and link events and then the page itself are passed to the listener, and the page is not retained.</p>
+ *
+ * <p>When created for multiple pages, all pages captured during a single include are collected in capture
+ * order, keyed by {@link PageRef}.  This allows one include to capture a composite page, such as a whole
+ * chapter.</p>
+ *
+ * <p>The resources and other pages read during the capture are recorded as its dependencies, so the capture
+ * can be invalidated precisely when any of them change.  Dependencies may be recorded from any thread, such
+ * as parallel captures within this capture.</p>
  */
 public class CaptureContext {
 
+  static final String REQUEST_ATTRIBUTE_NAME = CaptureContext.class.getName();
+
   static final ScopeEE.Request.Attribute<CaptureContext> REQUEST_ATTRIBUTE =
-      ScopeEE.REQUEST.attribute(CaptureContext.class.getName());
+      ScopeEE.REQUEST.attribute(REQUEST_ATTRIBUTE_NAME);
 
   /**
    * Gets the capture context or <code>null</code> if none occurring.
    */
   public static CaptureContext getCaptureContext(ServletRequest request) {
-    return REQUEST_ATTRIBUTE.context(request).get();
+    CurrentState state = CurrentState.getCurrentState(request);
+    return (state != null) ? state.captureContext : REQUEST_ATTRIBUTE.context(request).get();
   }
 
+  private final CaptureListener listener;
+
+  /**
+   * The pages captured in multiple-page mode, or {@code null} when capturing a single page.  In streaming mode,
+   * only the keys are used.
+   */
+  private final Map<PageRef, Page> capturedPages;
+
+  private PageRef capturedPageRef;
   private Page capturedPage;
 
+  private Set<String> resourceDependencies;
+  private Set<CaptureCache.Key> pageDependencies;
+
+  public CaptureContext() {
+    this(null, false);
+  }
+
+  /**
+   * @param  listener  The listener for a streaming capture or {@code null} to retain the captured page.
+   */
+  public CaptureContext(CaptureListener listener) {
+    this(listener, false);
+  }
+
+  /**
+   * @param  listener  The listener for a streaming capture or {@code null} to retain the captured pages.
+   * @param  multiplePages  Allows more than one page to be captured.
+   */
+  public CaptureContext(CaptureListener listener, boolean multiplePages) {
+    this.listener = listener;
+    this.capturedPages = multiplePages ? new LinkedHashMap<>() : null;
+  }
+
+  /**
+   * Gets the listener of a streaming capture or {@code null} when the captured page is retained.
+   */
+  public CaptureListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Checks if more than one page may be captured.
+   */
+  public boolean isMultiplePages() {
+    return capturedPages != null;
+  }
+
   public void setCapturedPage(Page capturedPage) {
     NullArgumentException.checkNotNull(capturedPage, "page");
-    if (this.capturedPage != null) {
+    PageRef pageRef = capturedPage.getPageRef();
+    if (capturedPages != null) {
+      if (capturedPages.containsKey(pageRef)) {
+        throw new IllegalStateException("Page already captured: " + pageRef);
+      }
+      capturedPages.put(pageRef, (listener == null) ? capturedPage : null);
+    } else if (this.capturedPageRef != null) {
       throw new IllegalStateException(
           "Cannot capture more than one page: first page="
-              + this.capturedPage.getPageRef()
-              + ", second page=" + capturedPage.getPageRef()
+              + this.capturedPageRef
+              + ", second page=" + pageRef
       );
     }
-    this.capturedPage = capturedPage;
+    if (this.capturedPageRef == null) {
+      this.capturedPageRef = pageRef;
+      if (listener == null) {
+        this.capturedPage = capturedPage;
+      }
+    }
+    if (listener != null) {
+      fireNodeEvents(capturedPage);
+      listener.onPage(capturedPage);
+    }
   }
 
+  /**
+   * Gets the captured page.  When capturing multiple pages, this is the first page captured.
+   *
+   * @return  The page or {@code null} when not yet captured or the capture is streaming
+   */
   public Page getCapturedPage() {
     return capturedPage;
   }
+
+  /**
+   * Gets all pages captured, in capture order.
+   *
+   * @return  The unmodifiable pages, empty when none captured or the capture is streaming.
+   *
+   * @throws  IllegalStateException  when not capturing multiple pages
+   */
+  public Map<PageRef, Page> getCapturedPages() throws IllegalStateException {
+    if (capturedPages == null) {
+      throw new IllegalStateException("Not capturing multiple pages");
+    }
+    if (listener != null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(capturedPages);
+  }
+
+  /**
+   * Checks if a page has been captured, including streaming captures.
+   */
+  public boolean isPageCaptured() {
+    return capturedPageRef != null;
+  }
+
+  /**
+   * Passes the links of the given node, then each of its elements and their links, depth-first in document
+   * order, to the listener.
+   */
+  private void fireNodeEvents(Node node) {
+    for (PageRef pageLink : node.getPageLinks()) {
+      listener.onLink(pageLink);
+    }
+    for (Element childElement : node.getChildElements()) {
+      listener.onElement(childElement);
+      fireNodeEvents(childElement);
+    }
+  }
+
+  /**
+   * Records that this capture read the given resource, such as an included fragment.  Resources dispatched to
+   * through the capture request are recorded automatically, so this is only needed for resources read by
+   * other means, such as through the servlet context.
+   *
+   * @param  resourcePath  The path of the resource within the servlet context
+   */
+  public synchronized void addResourceDependency(String resourcePath) {
+    NullArgumentException.checkNotNull(resourcePath, "resourcePath");
+    if (resourceDependencies == null) {
+      resourceDependencies = new HashSet<>();
+    }
+    resourceDependencies.add(resourcePath);
+  }
+
+  /**
+   * Gets the resources read by this capture.
+   *
+   * @return  The unmodifiable resource paths, empty when none.
+   */
+  public synchronized Set<String> getResourceDependencies() {
+    return (resourceDependencies == null) ? Collections.emptySet() : Collections.unmodifiableSet(resourceDependencies);
+  }
+
+  /**
+   * Records that this capture read another page.
+   * This is recorded by {@link LocalPageRepository} for pages gotten during the capture.
+   */
+  public synchronized void addPageDependency(CaptureCache.Key key) {
+    NullArgumentException.checkNotNull(key, "key");
+    if (pageDependencies == null) {
+      pageDependencies = new HashSet<>();
+    }
+    pageDependencies.add(key);
+  }
+
+  /**
+   * Gets the other pages read by this capture.
+   *
+   * @return  The unmodifiable pages, empty when none.
+   */
+  public synchronized Set<CaptureCache.Key> getPageDependencies() {
+    return (pageDependencies == null) ? Collections.emptySet() : Collections.unmodifiableSet(pageDependencies);
+  }
 }
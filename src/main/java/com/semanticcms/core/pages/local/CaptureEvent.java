@@ -0,0 +1,71 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for each page captured by {@link LocalPageRepository}, including failed captures.
+ * Pages served from a {@link CaptureCache} are not captured, so do not produce events.
+ */
+@Name("com.semanticcms.core.pages.local.Capture")
+@Label("Page Capture")
+@Description("Capture of a page by including its resource")
+@Category({"SemanticCMS", "Pages"})
+@StackTrace(false)
+final class CaptureEvent extends jdk.jfr.Event {
+
+  @Label("Repository")
+  String repository;
+
+  @Label("Path")
+  String path;
+
+  @Label("Resource")
+  @Description("The path of the resource included to capture the page")
+  String resource;
+
+  @Label("Capture Level")
+  String level;
+
+  @Label("Skipped")
+  @Description("Whether the capture was ended by SkipPageException")
+  boolean skipped;
+
+  @Label("Discarded Output")
+  @Description("The amount of direct output discarded, counting characters written to the writer and bytes written to the output stream")
+  long discarded;
+
+  @Label("Failed")
+  @Description("Whether the capture failed with an exception")
+  boolean failed;
+
+  @Label("Failure")
+  @Description("The class of the exception the capture failed with")
+  String failure;
+}
@@ -0,0 +1,258 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * The request for captures, which overlays attributes and the method on the wrapped request without
+ * modifying it.  Attributes set or removed during the capture are kept locally, while all other
+ * attributes are read through from the wrapped request.
+ *
+ * <p>A capture sets only a handful of attributes, so the local attributes are kept in small parallel arrays
+ * searched linearly, comparing by identity before equality.  Nested captures overlay the enclosing capture
+ * request in turn, without copying or hashing any attributes of the wrapped requests.  Only the
+ * {@link CurrentState} is copied, so a capture never modifies the state of the request it is capturing
+ * from.</p>
+ *
+ * <p>The resources dispatched to through {@link #getRequestDispatcher(java.lang.String)}, such as included
+ * fragments, are recorded as resource dependencies of the current {@link CaptureContext}.</p>
+ *
+ * <p>May be re-targeted to another request with {@link #reset(javax.servlet.http.HttpServletRequest)},
+ * so instances may be pooled.  Not thread-safe: used by a single capture at a time.</p>
+ *
+ * @see  CapturePool
+ */
+final class CaptureHttpServletRequest extends HttpServletRequestWrapper {
+
+  /**
+   * Marks an attribute removed locally, hiding any attribute of the wrapped request.
+   */
+  private static final Object REMOVED = new Object();
+
+  /**
+   * The initial number of local attributes, which covers the attributes set by a capture.
+   */
+  private static final int INITIAL_CAPACITY = 8;
+
+  private String[] names = new String[INITIAL_CAPACITY];
+
+  private Object[] values = new Object[INITIAL_CAPACITY];
+
+  private int size;
+
+  private String method;
+
+  /**
+   * The current state of this request, initialized from the wrapped request and reused when pooled.
+   */
+  private final CurrentState currentState = new CurrentState();
+
+  CaptureHttpServletRequest(HttpServletRequest request) {
+    super(request);
+    inheritCurrentState();
+  }
+
+  /**
+   * Re-targets this request to another wrapped request, discarding all local attributes and the method,
+   * then initializes the current state from the wrapped request.
+   */
+  void reset(HttpServletRequest request) {
+    clear(request);
+    inheritCurrentState();
+  }
+
+  /**
+   * Re-targets this request to another wrapped request, discarding all local attributes, the method,
+   * and the current state.  Nothing is read from the wrapped request.
+   */
+  void clear(HttpServletRequest request) {
+    setRequest(request);
+    Arrays.fill(names, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+    method = null;
+    currentState.clear();
+  }
+
+  private void inheritCurrentState() {
+    currentState.copy(getRequest());
+  }
+
+  /**
+   * Gets the current state of this request, without any attribute lookup.
+   */
+  CurrentState getCurrentState() {
+    return currentState;
+  }
+
+  /**
+   * Overrides the method of the wrapped request.
+   */
+  void setMethod(String method) {
+    this.method = method;
+  }
+
+  @Override
+  public String getMethod() {
+    return (method != null) ? method : super.getMethod();
+  }
+
+  /**
+   * Finds a local attribute, first by identity since names are typically constants.
+   *
+   * @return  the index or {@code -1} when not set locally
+   */
+  private int indexOf(String name) {
+    for (int i = 0; i < size; i++) {
+      if (names[i] == name) {
+        return i;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sets a local attribute directly, hiding any attribute of the wrapped request.
+   * This bypasses any attribute scope machinery, and is used to set-up captures.
+   *
+   * @param  value  the value or {@code null} to remove the attribute
+   */
+  void setLocalAttribute(String name, Object value) {
+    currentState.attributeChanged(name, value);
+    if (value == null) {
+      value = REMOVED;
+    }
+    int index = indexOf(name);
+    if (index != -1) {
+      values[index] = value;
+    } else {
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size << 1);
+        values = Arrays.copyOf(values, size << 1);
+      }
+      names[size] = name;
+      values[size] = value;
+      size++;
+    }
+  }
+
+  /**
+   * Records the resource as a dependency of the current capture, so the capture is invalidated when the
+   * resource changes.
+   */
+  @Override
+  public RequestDispatcher getRequestDispatcher(String path) {
+    RequestDispatcher dispatcher = super.getRequestDispatcher(path);
+    CaptureContext captureContext = currentState.captureContext;
+    if (dispatcher != null && captureContext != null) {
+      String resourcePath = getResourcePath(path);
+      if (resourcePath != null) {
+        captureContext.addResourceDependency(resourcePath);
+      }
+    }
+    return dispatcher;
+  }
+
+  /**
+   * Gets the path within the servlet context of a dispatcher path, which is resolved relative to the current
+   * include, if any, as done by the container.
+   *
+   * @return  The normalized path without any query string or {@code null} when not a valid path
+   */
+  private String getResourcePath(String path) {
+    int queryPos = path.indexOf('?');
+    if (queryPos != -1) {
+      path = path.substring(0, queryPos);
+    }
+    if (!path.startsWith("/")) {
+      String servletPath = (String) getAttribute(RequestDispatcher.INCLUDE_SERVLET_PATH);
+      String pathInfo;
+      if (servletPath != null) {
+        pathInfo = (String) getAttribute(RequestDispatcher.INCLUDE_PATH_INFO);
+      } else {
+        servletPath = getServletPath();
+        pathInfo = getPathInfo();
+      }
+      String requestPath = (pathInfo == null) ? servletPath : (servletPath + pathInfo);
+      path = requestPath.substring(0, requestPath.lastIndexOf('/') + 1) + path;
+    }
+    try {
+      return new URI(null, null, path, null).normalize().getPath();
+    } catch (URISyntaxException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    int index = indexOf(name);
+    if (index == -1) {
+      return super.getAttribute(name);
+    }
+    Object value = values[index];
+    return (value == REMOVED) ? null : value;
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    Set<String> attributeNames = new LinkedHashSet<>();
+    Enumeration<String> wrappedNames = super.getAttributeNames();
+    while (wrappedNames.hasMoreElements()) {
+      attributeNames.add(wrappedNames.nextElement());
+    }
+    for (int i = 0; i < size; i++) {
+      if (values[i] == REMOVED) {
+        attributeNames.remove(names[i]);
+      } else {
+        attributeNames.add(names[i]);
+      }
+    }
+    return Collections.enumeration(attributeNames);
+  }
+
+  @Override
+  public void setAttribute(String name, Object o) {
+    setLocalAttribute(name, o);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    setLocalAttribute(name, null);
+  }
+}
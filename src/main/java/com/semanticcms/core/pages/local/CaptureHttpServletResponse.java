@@ -0,0 +1,327 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response for captures, which discards all output and never modifies the wrapped response.
+ * Its writer and output stream are no-op sinks: no buffers, temporary files, or charset encoders
+ * are allocated for output that will not be kept.
+ *
+ * <p>Headers, status, and cookies are ignored.  The content type and character encoding are kept
+ * locally, since they may be used to select encoders during the capture.</p>
+ *
+ * <p>May be reused for any number of captures, calling {@link #resetDiscarded()} between them,
+ * or re-targeted to another response with {@link #reset(javax.servlet.http.HttpServletResponse)},
+ * so instances may be pooled.  Not thread-safe: used by a single capture at a time.</p>
+ *
+ * @see  CapturePool
+ */
+final class CaptureHttpServletResponse extends HttpServletResponseWrapper {
+
+  private String contentType;
+  private String characterEncoding = LocalPageRepository.ENCODING.name();
+  private int status = SC_OK;
+
+  private long discarded;
+
+  private PrintWriter writer;
+  private ServletOutputStream outputStream;
+
+  CaptureHttpServletResponse(HttpServletResponse response) {
+    super(response);
+  }
+
+  /**
+   * Re-targets this response to another wrapped response, restoring its initial state.
+   */
+  void reset(HttpServletResponse response) {
+    setResponse(response);
+    contentType = null;
+    characterEncoding = LocalPageRepository.ENCODING.name();
+    status = SC_OK;
+    discarded = 0;
+  }
+
+  /**
+   * Gets the amount of output discarded since the last reset, counting characters written to the writer
+   * and bytes written to the output stream.
+   */
+  long getDiscarded() {
+    return discarded;
+  }
+
+  void resetDiscarded() {
+    discarded = 0;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public void setContentType(String type) {
+    contentType = type;
+    if (type != null) {
+      int charsetPos = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+      if (charsetPos != -1) {
+        int end = type.indexOf(';', charsetPos);
+        characterEncoding = type.substring(charsetPos + "charset=".length(), end == -1 ? type.length() : end).trim();
+      }
+    }
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public void setCharacterEncoding(String charset) {
+    if (charset != null) {
+      characterEncoding = charset;
+    }
+  }
+
+  @Override
+  public void setContentLength(int len) {
+    // Ignored
+  }
+
+  @Override
+  public void setContentLengthLong(long len) {
+    // Ignored
+  }
+
+  @Override
+  public void setBufferSize(int size) {
+    // Ignored
+  }
+
+  @Override
+  public int getBufferSize() {
+    return 0;
+  }
+
+  @Override
+  public void flushBuffer() {
+    // Nothing buffered
+  }
+
+  @Override
+  public void resetBuffer() {
+    // Nothing buffered
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return false;
+  }
+
+  @Override
+  public void reset() {
+    status = SC_OK;
+  }
+
+  @Override
+  public void setLocale(Locale loc) {
+    // Ignored
+  }
+
+  @Override
+  public void addCookie(Cookie cookie) {
+    // Ignored
+  }
+
+  @Override
+  public boolean containsHeader(String name) {
+    return false;
+  }
+
+  @Override
+  public void sendError(int sc, String msg) {
+    status = sc;
+  }
+
+  @Override
+  public void sendError(int sc) {
+    status = sc;
+  }
+
+  @Override
+  public void sendRedirect(String location) {
+    status = SC_FOUND;
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    // Ignored
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    // Ignored
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    // Ignored
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    // Ignored
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    // Ignored
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    // Ignored
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    status = sc;
+  }
+
+  @Override
+  @Deprecated
+  public void setStatus(int sc, String sm) {
+    status = sc;
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return null;
+  }
+
+  @Override
+  public Collection<String> getHeaders(String name) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<String> getHeaderNames() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    PrintWriter w = writer;
+    if (w == null) {
+      w = new PrintWriter(
+          new Writer() {
+            @Override
+            public void write(int c) {
+              discarded++;
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+              discarded += len;
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+              discarded += len;
+            }
+
+            @Override
+            public Writer append(CharSequence csq) {
+              discarded += csq == null ? 4 : csq.length();
+              return this;
+            }
+
+            @Override
+            public Writer append(CharSequence csq, int start, int end) {
+              discarded += end - start;
+              return this;
+            }
+
+            @Override
+            public void flush() {
+              // Discard
+            }
+
+            @Override
+            public void close() {
+              // Discard
+            }
+          }
+      );
+      writer = w;
+    }
+    return w;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    ServletOutputStream o = outputStream;
+    if (o == null) {
+      o = new ServletOutputStream() {
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          throw new IllegalStateException("Output is discarded, no write listener supported");
+        }
+
+        @Override
+        public void write(int b) {
+          discarded++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+          discarded += len;
+        }
+      };
+      outputStream = o;
+    }
+    return o;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.semanticcms.core.model.Element;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.model.PageRef;
+
+/**
+ * Receives the events of a streaming capture, for consumers that only need parts of each page, such as
+ * search indexing or sitemap generation.  The captured pages are passed to the listener and not retained
+ * by the {@link CaptureContext}.
+ *
+ * <p>The page is still built in full by its resource.  Once it has been captured, the links of the page
+ * and then each of its elements, followed by the links of that element, are passed depth-first in document
+ * order, and finally the page itself.</p>
+ *
+ * @see  LocalPageRepository#capturePage(com.aoapps.net.Path, com.semanticcms.core.pages.CaptureLevel, com.semanticcms.core.pages.local.CaptureListener)
+ */
+public interface CaptureListener {
+
+  /**
+   * Called when an element has been captured.
+   */
+  default void onElement(Element element) {
+    // Do nothing
+  }
+
+  /**
+   * Called when a link to another page has been captured.
+   */
+  default void onLink(PageRef pageRef) {
+    // Do nothing
+  }
+
+  /**
+   * Called once the page has been captured.
+   */
+  default void onPage(Page page) {
+    // Do nothing
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.servlet.attribute.ScopeEE;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.ServletRequest;
+
+/**
+ * The pages already captured during a single top-level request, shared by all nested includes and captures.
+ * Since it lives only as long as the request, it needs no invalidation.
+ *
+ * <p>Thread-safe, since parallel captures share the memo of their originating request.</p>
+ */
+final class CaptureMemo {
+
+  private static final ScopeEE.Request.Attribute<CaptureMemo> REQUEST_ATTRIBUTE =
+      ScopeEE.REQUEST.attribute(CaptureMemo.class.getName());
+
+  private static final CaptureLevel[] levels = CaptureLevel.values();
+
+  /**
+   * Gets the memo for the given request, creating it when first needed.
+   * Subrequests see the memo of the request they wrap, so the memo should be created on the
+   * top-level request before any subrequests are created.
+   */
+  static CaptureMemo getInstance(ServletRequest request) {
+    ScopeEE.Request.Attribute.Context<CaptureMemo> context = REQUEST_ATTRIBUTE.context(request);
+    CaptureMemo memo = context.get();
+    if (memo == null) {
+      memo = new CaptureMemo();
+      context.set(memo);
+    }
+    return memo;
+  }
+
+  /**
+   * Sets a new, empty memo on the given request, hiding any memo of the request it wraps.
+   * This isolates captures that should not retain their pages for the rest of the top-level request.
+   */
+  static CaptureMemo newInstance(ServletRequest request) {
+    CaptureMemo memo = new CaptureMemo();
+    REQUEST_ATTRIBUTE.context(request).set(memo);
+    return memo;
+  }
+
+  private final ConcurrentMap<CaptureCache.Key, Page> pages = new ConcurrentHashMap<>();
+
+  private CaptureMemo() {
+    // Created by getInstance or newInstance only
+  }
+
+  /**
+   * Gets a page already captured in this request, at the requested level or any higher level.
+   *
+   * @return  The page or {@code null} when not yet captured
+   */
+  Page get(CaptureCache.Key key) {
+    for (int i = key.getLevel().ordinal(); i < levels.length; i++) {
+      Page page = pages.get(key.withLevel(levels[i]));
+      if (page != null) {
+        return page;
+      }
+    }
+    return null;
+  }
+
+  void put(CaptureCache.Key key, Page page) {
+    pages.put(key, page);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.net.Path;
+import com.semanticcms.core.pages.CaptureLevel;
+
+/**
+ * Receives timings and counts of page captures for a {@link LocalPageRepository}.
+ * All methods default to doing nothing.
+ *
+ * <p>Implementations must be thread-safe and fast, since they are called on every capture.</p>
+ *
+ * @see  LocalPageRepository#setCaptureMetrics(com.semanticcms.core.pages.local.CaptureMetrics)
+ * @see  SimpleCaptureMetrics
+ */
+public interface CaptureMetrics {
+
+  /**
+   * Called after each page is captured by including its resource.
+   *
+   * @param  nanos      The time spent capturing the page, in nanoseconds
+   * @param  skipped    Whether the capture was ended by {@link javax.servlet.jsp.SkipPageException}
+   * @param  discarded  The amount of direct output discarded, counting characters written to the writer
+   *                    and bytes written to the output stream
+   */
+  default void captured(LocalPageRepository repository, Path path, CaptureLevel level, long nanos, boolean skipped, long discarded) {
+    // Do nothing
+  }
+
+  /**
+   * Called when a page capture fails with an exception.
+   *
+   * @param  nanos  The time spent until the failure, in nanoseconds
+   */
+  default void failed(LocalPageRepository repository, Path path, CaptureLevel level, long nanos, Throwable cause) {
+    // Do nothing
+  }
+
+  /**
+   * Called when a page is found in the {@link CaptureCache}.
+   */
+  default void cacheHit(LocalPageRepository repository, Path path, CaptureLevel level) {
+    // Do nothing
+  }
+
+  /**
+   * Called when a page is not found in the {@link CaptureCache} and must be captured.
+   */
+  default void cacheMiss(LocalPageRepository repository, Path path, CaptureLevel level) {
+    // Do nothing
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.servlet.attribute.ScopeEE;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A per-request pool of capture requests and responses, so repeated and nested captures within the same request
+ * reuse their objects and internal arrays.  Released objects are re-targeted to inert placeholders, so the pool
+ * never retains any request or response.
+ *
+ * <p>The pool lives only as long as the request, so nothing is retained on container threads.  Each pool is
+ * used by a single thread, with parallel captures on other threads getting their own pool.</p>
+ */
+final class CapturePool {
+
+  /**
+   * The maximum number of each type of object pooled per request, which is the nesting depth of captures
+   * that are allocation-free.  May be set by the {@code com.semanticcms.core.pages.local.CapturePool.maxPooled}
+   * system property, where {@code 0} disables pooling, such as for comparison in benchmarks.
+   */
+  private static final int MAX_POOLED = Integer.getInteger(CapturePool.class.getName() + ".maxPooled", 8);
+
+  private static final ScopeEE.Request.Attribute<CapturePool> REQUEST_ATTRIBUTE =
+      ScopeEE.REQUEST.attribute(CapturePool.class.getName());
+
+  /**
+   * Gets the pool for the given request and the current thread, creating it when first needed.
+   * Subrequests see the pool of the request they wrap, so nested captures share the pool.
+   * A pool created by another thread is replaced on the request, which the other thread may continue
+   * to use for any captures already in progress.
+   */
+  static CapturePool getInstance(ServletRequest request) {
+    ScopeEE.Request.Attribute.Context<CapturePool> context = REQUEST_ATTRIBUTE.context(request);
+    CapturePool pool = context.get();
+    if (pool == null || pool.owner != Thread.currentThread()) {
+      pool = new CapturePool();
+      context.set(pool);
+    }
+    return pool;
+  }
+
+  private static <T> T released(Class<T> iface) {
+    return iface.cast(Proxy.newProxyInstance(
+        CapturePool.class.getClassLoader(),
+        new Class<?>[]{iface},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "Released " + iface.getSimpleName();
+            default:
+              throw new IllegalStateException("Capture already released");
+          }
+        }
+    ));
+  }
+
+  private static final HttpServletRequest releasedRequest = released(HttpServletRequest.class);
+
+  private static final HttpServletResponse releasedResponse = released(HttpServletResponse.class);
+
+  private final ArrayDeque<CaptureHttpServletRequest> requests = new ArrayDeque<>(MAX_POOLED);
+  private final ArrayDeque<CaptureHttpServletResponse> responses = new ArrayDeque<>(MAX_POOLED);
+
+  private final Thread owner = Thread.currentThread();
+
+  private CapturePool() {
+    // Created by getInstance only
+  }
+
+  CaptureHttpServletRequest acquire(HttpServletRequest request) {
+    CaptureHttpServletRequest captureRequest = requests.pollLast();
+    if (captureRequest == null) {
+      return new CaptureHttpServletRequest(request);
+    }
+    captureRequest.reset(request);
+    return captureRequest;
+  }
+
+  CaptureHttpServletResponse acquire(HttpServletResponse response) {
+    CaptureHttpServletResponse captureResponse = responses.pollLast();
+    if (captureResponse == null) {
+      return new CaptureHttpServletResponse(response);
+    }
+    captureResponse.reset(response);
+    return captureResponse;
+  }
+
+  void release(CaptureHttpServletRequest captureRequest) {
+    captureRequest.clear(releasedRequest);
+    if (requests.size() < MAX_POOLED) {
+      requests.addLast(captureRequest);
+    }
+  }
+
+  void release(CaptureHttpServletResponse captureResponse) {
+    captureResponse.reset(releasedResponse);
+    if (responses.size() < MAX_POOLED) {
+      responses.addLast(captureResponse);
+    }
+  }
+}
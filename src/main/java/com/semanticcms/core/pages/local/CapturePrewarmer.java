@@ -0,0 +1,259 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.net.Path;
+import com.semanticcms.core.model.ChildRef;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.model.PageRef;
+import com.semanticcms.core.pages.CaptureLevel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Captures pages ahead of use, such as after a deploy, so the first requests to each page do not pay the
+ * capture cost.  Pages are captured at {@link CaptureLevel#META} on a bounded pool of background threads,
+ * filling whatever {@linkplain LocalPageRepository#setCaptureCache(com.semanticcms.core.pages.local.CaptureCache)
+ * capture cache} is set on the repository.
+ *
+ * <p>Captures require a request, so {@link #prewarm()} must be called within a {@link PageContext}, typically by
+ * a warm-up request issued once the application has started.  That request blocks until pre-warming completes,
+ * while other threads, such as a readiness check, may use {@link #isReady()} or
+ * {@link #awaitReady(long, java.util.concurrent.TimeUnit)}.</p>
+ *
+ * <p>A page that fails to capture is counted and skipped, and does not stop pre-warming.  Any captures still
+ * running when pre-warming stops are waited for, so none outlive the warm-up request.</p>
+ */
+public class CapturePrewarmer {
+
+  /**
+   * The level pages are captured at.
+   */
+  public static final CaptureLevel LEVEL = CaptureLevel.META;
+
+  private final LocalPageRepository repository;
+  private final List<Path> roots;
+  private final boolean followChildren;
+  private final int threads;
+  private final long pauseNanos;
+
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final CountDownLatch ready = new CountDownLatch(1);
+  private final AtomicInteger captured = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+
+  /**
+   * @param  roots  The paths of the pages to capture, relative to the repository
+   * @param  followChildren  Also captures all child pages within the same book, recursively
+   * @param  threads  The maximum number of concurrent captures
+   * @param  pause  The pause after each capture, per thread, to throttle the load on a starting server.
+   *                {@code 0} for no pause.
+   */
+  public CapturePrewarmer(
+      LocalPageRepository repository,
+      Collection<? extends Path> roots,
+      boolean followChildren,
+      int threads,
+      long pause,
+      TimeUnit unit
+  ) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads < 1: " + threads);
+    }
+    if (pause < 0) {
+      throw new IllegalArgumentException("pause < 0: " + pause);
+    }
+    this.repository = repository;
+    this.roots = new ArrayList<>(roots);
+    this.followChildren = followChildren;
+    this.threads = threads;
+    this.pauseNanos = unit.toNanos(pause);
+  }
+
+  public LocalPageRepository getRepository() {
+    return repository;
+  }
+
+  /**
+   * Checks if pre-warming has completed, whether or not any pages failed.
+   */
+  public boolean isReady() {
+    return ready.getCount() == 0;
+  }
+
+  /**
+   * Waits for pre-warming to complete.
+   *
+   * @return  {@code true} when ready or {@code false} when timed-out
+   */
+  public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+    return ready.await(timeout, unit);
+  }
+
+  /**
+   * Gets the number of pages captured so far.
+   */
+  public int getCaptured() {
+    return captured.get();
+  }
+
+  /**
+   * Gets the number of pages that failed to capture so far.
+   */
+  public int getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Captures all pages, blocking until complete.  Must be called within a {@link PageContext}.
+   * Pre-warming is only performed once, further calls return immediately.
+   *
+   * @throws  InterruptedIOException  when interrupted, which stops pre-warming
+   */
+  public void prewarm() throws IOException {
+    if (!started.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      ServletContext servletContext = PageContext.getServletContext();
+      HttpServletRequest request = PageContext.getRequest();
+      HttpServletResponse response = PageContext.getResponse();
+      ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+        Thread thread = new Thread(r, CapturePrewarmer.class.getName());
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        CompletionService<Page> completionService = new ExecutorCompletionService<>(executor);
+        Set<Path> submitted = new HashSet<>();
+        int pending = 0;
+        for (Path root : roots) {
+          if (submitted.add(root)) {
+            submit(completionService, servletContext, request, response, root);
+            pending++;
+          }
+        }
+        while (pending > 0) {
+          Future<Page> future = completionService.take();
+          pending--;
+          Page page;
+          try {
+            page = future.get();
+          } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            continue;
+          }
+          if (page != null) {
+            captured.incrementAndGet();
+            if (followChildren) {
+              PageRef pageRef = page.getPageRef();
+              for (ChildRef childRef : page.getChildRefs()) {
+                PageRef childPageRef = childRef.getPageRef();
+                if (
+                    childPageRef.getBookRef().equals(pageRef.getBookRef())
+                        && submitted.add(childPageRef.getPath())
+                ) {
+                  submit(completionService, servletContext, request, response, childPageRef.getPath());
+                  pending++;
+                }
+              }
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ioErr = new InterruptedIOException();
+        ioErr.initCause(e);
+        throw ioErr;
+      } finally {
+        executor.shutdownNow();
+        // Wait for any running captures, since they include through wrappers of the request and response
+        boolean interrupted = false;
+        while (true) {
+          try {
+            if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+              break;
+            }
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    } finally {
+      ready.countDown();
+    }
+  }
+
+  /**
+   * Submits one page capture, creating its subrequest and subresponse on the calling thread.
+   * Each capture has its own {@link CaptureMemo}, so pre-warmed pages are only retained by the
+   * capture cache, and not for the duration of the warm-up request.
+   */
+  private void submit(
+      CompletionService<Page> completionService,
+      ServletContext servletContext,
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Path pagePath
+  ) {
+    CaptureHttpServletRequest taskRequest = new CaptureHttpServletRequest(request);
+    CaptureMemo.newInstance(taskRequest);
+    CaptureHttpServletResponse taskResponse = new CaptureHttpServletResponse(response);
+    completionService.submit(() -> {
+      try {
+        return PageContext.newPageContext(
+            servletContext,
+            taskRequest,
+            taskResponse,
+            () -> repository.getPage(pagePath, LEVEL)
+        );
+      } finally {
+        if (pauseNanos > 0) {
+          TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+      }
+    });
+  }
+}
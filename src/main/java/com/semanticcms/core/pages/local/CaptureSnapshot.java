@@ -0,0 +1,256 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.lang.NullArgumentException;
+import com.aoapps.lang.validation.ValidationException;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Persists a {@link CaptureCache} to a local file, so a restarted server can serve captured pages without
+ * capturing them again.  The file is written and read as a stream, so only one page is held in encoded form
+ * at a time.
+ *
+ * <p>Each entry keeps the last-modified time of the resource it was captured from, so entries for resources
+ * changed since the snapshot are never returned by the cache and are captured again.  The whole snapshot is
+ * ignored when written by a different build, as identified by a caller-provided build hash, since the
+ * captured pages may depend on the application code.</p>
+ *
+ * <p>The dependencies recorded for captures are not persisted, so a restored page is only captured again
+ * when its own resource changes, and not when any other resource or page it depends on changes, such as
+ * through {@link LocalPageRepository#invalidateResource(java.lang.String)}.</p>
+ *
+ * <p>Pages are encoded by a caller-provided {@link PageCodec}, since the pages and elements of the model are
+ * not serializable and their element types are defined by the application.  {@link #SERIALIZATION} encodes
+ * page implementations that are {@link Serializable}.  Pages the codec cannot encode are skipped.</p>
+ *
+ * @see  LocalPageRepository#writeCaptureSnapshot(java.nio.file.Path, java.lang.String, com.semanticcms.core.pages.local.CaptureSnapshot.PageCodec)
+ * @see  LocalPageRepository#readCaptureSnapshot(java.nio.file.Path, java.lang.String, com.semanticcms.core.pages.local.CaptureSnapshot.PageCodec)
+ */
+public final class CaptureSnapshot {
+
+  /** Make no instances. */
+  private CaptureSnapshot() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Encodes and decodes the pages of a snapshot.
+   */
+  public interface PageCodec {
+
+    /**
+     * Encodes a page.  The stream must not be closed.
+     *
+     * @throws  IOException  when the page cannot be encoded, in which case the page is skipped
+     */
+    void write(Page page, OutputStream out) throws IOException;
+
+    /**
+     * Decodes a page written by {@link #write(com.semanticcms.core.model.Page, java.io.OutputStream)}.
+     * The stream ends after the encoded page.
+     *
+     * @throws  IOException  when the page cannot be decoded, in which case the page is skipped
+     */
+    Page read(InputStream in) throws IOException;
+  }
+
+  private static final int MAGIC = 0x53434353; // "SCCS"
+
+  private static final int VERSION = 2;
+
+  private static final ObjectInputFilter filter = ObjectInputFilter.Config.createFilter(
+      "java.**;javax.**;com.aoapps.**;com.semanticcms.**;!*"
+  );
+
+  /**
+   * Encodes pages with Java serialization.  Only page implementations that are {@link Serializable} may be
+   * encoded, and only classes of the Java platform, AO Industries, and SemanticCMS are accepted when decoding.
+   */
+  public static final PageCodec SERIALIZATION = new PageCodec() {
+    @Override
+    public void write(Page page, OutputStream out) throws IOException {
+      if (!(page instanceof Serializable)) {
+        throw new NotSerializableException(page.getClass().getName());
+      }
+      ObjectOutputStream objectOut = new ObjectOutputStream(out);
+      objectOut.writeObject(page);
+      objectOut.flush();
+    }
+
+    @Override
+    public Page read(InputStream in) throws IOException {
+      ObjectInputStream objectIn = new ObjectInputStream(in);
+      objectIn.setObjectInputFilter(filter);
+      try {
+        return (Page) objectIn.readObject();
+      } catch (ClassNotFoundException | ClassCastException e) {
+        throw new IOException(e);
+      }
+    }
+  };
+
+  private static final CaptureLevel[] levels = CaptureLevel.values();
+
+  /**
+   * Writes all entries of the given cache to a file.  The file is written to a temporary file then moved into
+   * place, so a partially written snapshot is never read.
+   *
+   * @return  The number of entries written, excluding any pages the codec cannot encode
+   */
+  public static int write(CaptureCache cache, Path file, String buildHash, PageCodec codec) throws IOException {
+    NullArgumentException.checkNotNull(codec, "codec");
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tempFile = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    int[] count = {0};
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(buildHash);
+        // Each page is encoded before its entry is written, so a page the codec cannot encode is skipped
+        // without corrupting the snapshot
+        ByteArrayOutputStream pageBytes = new ByteArrayOutputStream();
+        IOException[] error = {null};
+        cache.forEach((key, lastModified, page) -> {
+          if (error[0] == null) {
+            pageBytes.reset();
+            try {
+              codec.write(page, pageBytes);
+            } catch (IOException e) {
+              return;
+            }
+            try {
+              out.writeBoolean(true);
+              out.writeUTF(key.getPrefix());
+              out.writeUTF(key.getPath().toString());
+              out.writeByte(key.getLevel().ordinal());
+              out.writeLong(lastModified);
+              out.writeInt(pageBytes.size());
+              pageBytes.writeTo(out);
+              count[0]++;
+            } catch (IOException e) {
+              error[0] = e;
+            }
+          }
+        });
+        if (error[0] != null) {
+          throw error[0];
+        }
+        out.writeBoolean(false);
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    return count[0];
+  }
+
+  /**
+   * Reads a snapshot into the given cache.
+   *
+   * @return  The number of entries added to the cache, which is {@code 0} when the file does not exist,
+   *          is not a snapshot of this version, or was written by a different build.  When the snapshot
+   *          is corrupt or truncated, only the entries before the damage are added.
+   */
+  public static int read(CaptureCache cache, Path file, String buildHash, PageCodec codec) throws IOException {
+    NullArgumentException.checkNotNull(codec, "codec");
+    InputStream fileIn;
+    try {
+      fileIn = Files.newInputStream(file);
+    } catch (NoSuchFileException e) {
+      return 0;
+    }
+    int loaded = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+      if (
+          in.readInt() != MAGIC
+              || in.readInt() != VERSION
+              || !in.readUTF().equals(buildHash)
+      ) {
+        return 0;
+      }
+      while (in.readBoolean()) {
+        String prefix = in.readUTF();
+        String path = in.readUTF();
+        int level = in.readUnsignedByte();
+        long lastModified = in.readLong();
+        int len = in.readInt();
+        if (len < 0) {
+          // Corrupt snapshot
+          break;
+        }
+        byte[] pageBytes = in.readNBytes(len);
+        if (pageBytes.length != len) {
+          // Truncated snapshot
+          break;
+        }
+        if (level < levels.length) {
+          Page page;
+          try {
+            page = codec.read(new ByteArrayInputStream(pageBytes));
+          } catch (IOException e) {
+            // Skip pages that no longer decode
+            continue;
+          }
+          try {
+            cache.put(
+                new CaptureCache.Key(prefix, com.aoapps.net.Path.valueOf(path), levels[level]),
+                lastModified,
+                page
+            );
+          } catch (ValidationException e) {
+            continue;
+          }
+          loaded++;
+        }
+      }
+    } catch (EOFException | UTFDataFormatException e) {
+      // Corrupt or truncated snapshot
+    }
+    return loaded;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A {@link PageWriter} buffering characters for the container's {@link PrintWriter}.
+ *
+ * @see  PageContext.OutputMode#BUFFERED
+ */
+final class CharPageWriter extends PageWriter {
+
+  private final char[] buf;
+  private int count;
+
+  CharPageWriter(Writer out, int bufferSize) {
+    super(out);
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize <= 0: " + bufferSize);
+    }
+    this.buf = new char[bufferSize];
+  }
+
+  CharPageWriter(Writer out) {
+    this(out, DEFAULT_BUFFER_SIZE);
+  }
+
+  @Override
+  void flushBuffer() {
+    if (count > 0) {
+      if (!hasError()) {
+        try {
+          out.write(buf, 0, count);
+        } catch (IOException e) {
+          recordError(e);
+        }
+      }
+      count = 0;
+    }
+  }
+
+  @Override
+  void flushResponse() throws IOException {
+    out.flush();
+    checkOut();
+  }
+
+  /**
+   * The container's {@link PrintWriter} never throws {@link IOException}, so its error state is checked
+   * and raised as an {@link IOException}.  This flushes the container's writer, so is only done when the
+   * response is flushed or the page context owning the output ends, and not as each buffer is written.
+   */
+  private void checkOut() throws IOException {
+    if (out instanceof PrintWriter && ((PrintWriter) out).checkError()) {
+      throw new IOException("Error writing to response");
+    }
+  }
+
+  @Override
+  void checkResponseError() {
+    if (!hasError()) {
+      try {
+        checkOut();
+      } catch (IOException e) {
+        recordError(e);
+      }
+    }
+  }
+
+  @Override
+  public void write(int c) {
+    if (count == buf.length) {
+      flushBuffer();
+    }
+    buf[count++] = (char) c;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    if (len >= buf.length) {
+      // Write large arrays directly
+      flushBuffer();
+      if (!hasError()) {
+        try {
+          out.write(cbuf, off, len);
+        } catch (IOException e) {
+          recordError(e);
+        }
+      }
+    } else {
+      if (len > buf.length - count) {
+        flushBuffer();
+      }
+      System.arraycopy(cbuf, off, buf, count, len);
+      count += len;
+    }
+  }
+
+  @Override
+  public void write(String s, int off, int len) {
+    while (len > 0) {
+      if (count == buf.length) {
+        flushBuffer();
+      }
+      int n = Math.min(len, buf.length - count);
+      s.getChars(off, off + n, buf, count);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public boolean checkError() {
+    return super.checkError() || (out instanceof PrintWriter && ((PrintWriter) out).checkError());
+  }
+}
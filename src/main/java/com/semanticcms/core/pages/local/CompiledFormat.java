@@ -0,0 +1,208 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IllegalFormatCodePointException;
+import java.util.IllegalFormatConversionException;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+
+/**
+ * A format string parsed once for repeated printing, supporting the subset of {@link java.util.Formatter}
+ * conversions commonly used in templates: {@code %s}, {@code %d}, {@code %c}, {@code %b}, {@code %n},
+ * and {@code %%}.  Flags, widths, precisions, and argument indexes are not supported.
+ *
+ * <p>Unlike {@link PrintWriter#printf(java.lang.String, java.lang.Object...)}, no {@link java.util.Formatter}
+ * is created per call, and output is locale-independent.  When written to a {@link PageWriter}, integer
+ * arguments are printed without creating strings.</p>
+ *
+ * <p>Instances are immutable and thread-safe, intended to be held in constants.</p>
+ *
+ * @see  PageContextWriter#printf(com.semanticcms.core.pages.local.CompiledFormat, java.lang.Object...)
+ */
+public final class CompiledFormat {
+
+  private static final String lineSeparator = System.lineSeparator();
+
+  /**
+   * Parses the given format.
+   *
+   * @throws  IllegalFormatException  when the format uses any unsupported syntax
+   */
+  public static CompiledFormat compile(String format) throws IllegalFormatException {
+    List<String> literals = new ArrayList<>();
+    StringBuilder conversions = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    final int len = format.length();
+    int pos = 0;
+    while (pos < len) {
+      char ch = format.charAt(pos++);
+      if (ch != '%') {
+        literal.append(ch);
+      } else {
+        if (pos == len) {
+          throw new UnknownFormatConversionException("%");
+        }
+        char conversion = format.charAt(pos++);
+        switch (conversion) {
+          case '%':
+            literal.append('%');
+            break;
+          case 'n':
+            literal.append(lineSeparator);
+            break;
+          case 's':
+          case 'd':
+          case 'c':
+          case 'b':
+            literals.add(literal.toString());
+            literal.setLength(0);
+            conversions.append(conversion);
+            break;
+          default:
+            throw new UnknownFormatConversionException(String.valueOf(conversion));
+        }
+      }
+    }
+    literals.add(literal.toString());
+    return new CompiledFormat(
+        format,
+        literals.toArray(new String[literals.size()]),
+        conversions.toString().toCharArray()
+    );
+  }
+
+  private final String format;
+
+  /**
+   * The literal text before each conversion, followed by the literal text after the last conversion.
+   * Empty literals are not written.
+   */
+  private final String[] literals;
+
+  private final char[] conversions;
+
+  private CompiledFormat(String format, String[] literals, char[] conversions) {
+    this.format = format;
+    this.literals = literals;
+    this.conversions = conversions;
+  }
+
+  /**
+   * Gets the original format.
+   */
+  @Override
+  public String toString() {
+    return format;
+  }
+
+  /**
+   * Gets the number of arguments used by this format.
+   */
+  public int getArgumentCount() {
+    return conversions.length;
+  }
+
+  /**
+   * Prints this format with the given arguments.  Any extra arguments are ignored.
+   *
+   * @throws  IllegalFormatException  when too few arguments or an argument does not match its conversion
+   */
+  public void print(PrintWriter out, Object... args) throws IllegalFormatException {
+    final int count = conversions.length;
+    if (args.length < count) {
+      throw new MissingFormatArgumentException("%" + conversions[args.length]);
+    }
+    for (int i = 0; i < count; i++) {
+      String literal = literals[i];
+      if (!literal.isEmpty()) {
+        out.write(literal);
+      }
+      Object arg = args[i];
+      switch (conversions[i]) {
+        case 's':
+          out.write(String.valueOf(arg));
+          break;
+        case 'd':
+          printInteger(out, arg);
+          break;
+        case 'c':
+          printCharacter(out, arg);
+          break;
+        case 'b':
+          out.write((arg == null) ? "false" : (arg instanceof Boolean) ? arg.toString() : "true");
+          break;
+        default:
+          throw new AssertionError("Unexpected conversion: " + conversions[i]);
+      }
+    }
+    String last = literals[count];
+    if (!last.isEmpty()) {
+      out.write(last);
+    }
+  }
+
+  private static void printInteger(PrintWriter out, Object arg) {
+    if (arg == null) {
+      out.write("null");
+    } else if (
+        arg instanceof Integer
+            || arg instanceof Long
+            || arg instanceof Short
+            || arg instanceof Byte
+    ) {
+      out.print(((Number) arg).longValue());
+    } else if (arg instanceof BigInteger) {
+      out.write(arg.toString());
+    } else {
+      throw new IllegalFormatConversionException('d', arg.getClass());
+    }
+  }
+
+  private static void printCharacter(PrintWriter out, Object arg) {
+    if (arg == null) {
+      out.write("null");
+    } else if (arg instanceof Character) {
+      out.write((Character) arg);
+    } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+      int codePoint = ((Number) arg).intValue();
+      if (!Character.isValidCodePoint(codePoint)) {
+        throw new IllegalFormatCodePointException(codePoint);
+      }
+      if (Character.isBmpCodePoint(codePoint)) {
+        out.write(codePoint);
+      } else {
+        out.write(Character.highSurrogate(codePoint));
+        out.write(Character.lowSurrogate(codePoint));
+      }
+    } else {
+      throw new IllegalFormatConversionException('c', arg.getClass());
+    }
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -37,14 +37,21 @@ public final class CurrentCaptureLevel {
     throw new AssertionError();
   }
 
+  static final String CAPTURE_LEVEL_REQUEST_ATTRIBUTE_NAME = CurrentCaptureLevel.class.getName() + ".captureLevel";
+
   private static final ScopeEE.Request.Attribute<CaptureLevel> CAPTURE_LEVEL_REQUEST_ATTRIBUTE =
-      ScopeEE.REQUEST.attribute(CurrentCaptureLevel.class.getName() + ".captureLevel");
+      ScopeEE.REQUEST.attribute(CAPTURE_LEVEL_REQUEST_ATTRIBUTE_NAME);
 
   /**
    * Gets the capture level or {@link CaptureLevel#BODY} if none occurring.
    */
   public static CaptureLevel getCaptureLevel(ServletRequest request) {
-    return CAPTURE_LEVEL_REQUEST_ATTRIBUTE.context(request).getOrDefault(CaptureLevel.BODY);
+    CurrentState state = CurrentState.getCurrentState(request);
+    if (state == null) {
+      return CAPTURE_LEVEL_REQUEST_ATTRIBUTE.context(request).getOrDefault(CaptureLevel.BODY);
+    }
+    CaptureLevel level = state.captureLevel;
+    return (level != null) ? level : CaptureLevel.BODY;
   }
 
   public static void setCaptureLevel(ServletRequest request, CaptureLevel level) {
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -37,13 +37,17 @@ public final class CurrentNode {
     throw new AssertionError();
   }
 
+  static final String REQUEST_ATTRIBUTE_NAME = "currentNode";
+
   /**
    * Cleared and restored on request in CapturePage.
    */
-  public static final ScopeEE.Request.Attribute<Node> REQUEST_ATTRIBUTE = ScopeEE.REQUEST.attribute("currentNode");
+  public static final ScopeEE.Request.Attribute<Node> REQUEST_ATTRIBUTE =
+      ScopeEE.REQUEST.attribute(REQUEST_ATTRIBUTE_NAME);
 
   public static Node getCurrentNode(ServletRequest request) {
-    return REQUEST_ATTRIBUTE.context(request).get();
+    CurrentState state = CurrentState.getCurrentState(request);
+    return (state != null) ? state.node : REQUEST_ATTRIBUTE.context(request).get();
   }
 
   public static void setCurrentNode(ServletRequest request, Node node) {
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2013, 2014, 2015, 2016, 2017, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -37,17 +37,20 @@ public final class CurrentPage {
     throw new AssertionError();
   }
 
+  static final String REQUEST_ATTRIBUTE_NAME = /*PageTag.class.getName()+".*/ "currentPage";
+
   /**
    * Cleared and restored on request in CapturePage.
    */
   public static final ScopeEE.Request.Attribute<Page> REQUEST_ATTRIBUTE =
-      ScopeEE.REQUEST.attribute(/*PageTag.class.getName()+".*/ "currentPage");
+      ScopeEE.REQUEST.attribute(REQUEST_ATTRIBUTE_NAME);
 
   /**
    * Gets the currentPage or <code>null</code> if not inside a <code>PageTag</code>.
    */
   public static Page getCurrentPage(ServletRequest request) {
-    return REQUEST_ATTRIBUTE.context(request).get();
+    CurrentState state = CurrentState.getCurrentState(request);
+    return (state != null) ? state.page : REQUEST_ATTRIBUTE.context(request).get();
   }
 
   public static void setCurrentPage(ServletRequest request, Page page) {
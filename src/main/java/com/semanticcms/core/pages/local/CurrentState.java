@@ -0,0 +1,119 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.semanticcms.core.model.Node;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import javax.servlet.ServletRequest;
+
+/**
+ * The current node, page, capture level, and capture context of a capture request, held together in typed
+ * fields.  These are read on nearly every element render, and are reached without any attribute lookup when
+ * given the capture request itself.
+ *
+ * <p>Each {@link CaptureHttpServletRequest} has its own current state, initialized from the wrapped
+ * request, so a capture never modifies the state of the request it is capturing from.  The capture request
+ * observes every write of the individual request attributes made through it, and keeps its current state in
+ * sync.  The individual request attributes remain the source of truth, and are read directly for any other
+ * request, including wrappers of the capture request, since a wrapper may hold attributes of its own.</p>
+ */
+final class CurrentState {
+
+  /**
+   * Gets the current state of a request or {@code null} when not a capture request, in which case the
+   * individual request attributes must be read.  No attribute lookup is performed.
+   */
+  static CurrentState getCurrentState(ServletRequest request) {
+    if (request instanceof CaptureHttpServletRequest) {
+      return ((CaptureHttpServletRequest) request).getCurrentState();
+    }
+    return null;
+  }
+
+  Node node;
+  Page page;
+
+  /**
+   * The capture level or {@code null} when no capture is occurring.
+   */
+  CaptureLevel captureLevel;
+
+  CaptureContext captureContext;
+
+  CurrentState() {
+    // Empty
+  }
+
+  /**
+   * Initializes from the individual request attributes.
+   */
+  private void load(ServletRequest request) {
+    node = CurrentNode.REQUEST_ATTRIBUTE.context(request).get();
+    page = CurrentPage.REQUEST_ATTRIBUTE.context(request).get();
+    captureLevel = (CaptureLevel) request.getAttribute(CurrentCaptureLevel.CAPTURE_LEVEL_REQUEST_ATTRIBUTE_NAME);
+    captureContext = CaptureContext.REQUEST_ATTRIBUTE.context(request).get();
+  }
+
+  /**
+   * Initializes from the current state of a capture request, or the individual request attributes of any
+   * other request.
+   */
+  void copy(ServletRequest request) {
+    CurrentState state = getCurrentState(request);
+    if (state == null) {
+      load(request);
+    } else {
+      node = state.node;
+      page = state.page;
+      captureLevel = state.captureLevel;
+      captureContext = state.captureContext;
+    }
+  }
+
+  /**
+   * Updates the field for an individual request attribute, when it is one of the attributes held.
+   * Values of an unexpected type are held as {@code null}.
+   *
+   * @param  value  The new value or {@code null} when removed
+   */
+  void attributeChanged(String name, Object value) {
+    if (CurrentNode.REQUEST_ATTRIBUTE_NAME.equals(name)) {
+      node = (value instanceof Node) ? (Node) value : null;
+    } else if (CurrentPage.REQUEST_ATTRIBUTE_NAME.equals(name)) {
+      page = (value instanceof Page) ? (Page) value : null;
+    } else if (CurrentCaptureLevel.CAPTURE_LEVEL_REQUEST_ATTRIBUTE_NAME.equals(name)) {
+      captureLevel = (value instanceof CaptureLevel) ? (CaptureLevel) value : null;
+    } else if (CaptureContext.REQUEST_ATTRIBUTE_NAME.equals(name)) {
+      captureContext = (value instanceof CaptureContext) ? (CaptureContext) value : null;
+    }
+  }
+
+  void clear() {
+    node = null;
+    page = null;
+    captureLevel = null;
+    captureContext = null;
+  }
+}
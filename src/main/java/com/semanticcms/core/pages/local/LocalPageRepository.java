@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2017, 2018, 2019, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2017, 2018, 2019, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,23 +28,38 @@ import com.aoapps.encoding.Serialization;
 import com.aoapps.encoding.servlet.DoctypeEE;
 import com.aoapps.encoding.servlet.SerializationEE;
 import com.aoapps.hodgepodge.util.Tuple2;
+import com.aoapps.lang.NullArgumentException;
+import com.aoapps.lang.Throwables;
 import com.aoapps.net.Path;
 import com.aoapps.servlet.ServletContextCache;
 import com.aoapps.servlet.ServletUtil;
 import com.aoapps.servlet.http.Dispatcher;
 import com.aoapps.servlet.http.HttpServletUtil;
-import com.aoapps.servlet.http.NullHttpServletResponseWrapper;
-import com.aoapps.servlet.subrequest.HttpServletSubRequestWrapper;
-import com.aoapps.servlet.subrequest.HttpServletSubResponseWrapper;
-import com.aoapps.servlet.subrequest.IHttpServletSubRequest;
-import com.aoapps.servlet.subrequest.IHttpServletSubResponse;
-import com.aoapps.tempfiles.servlet.TempFileContextEE;
 import com.semanticcms.core.model.Page;
+import com.semanticcms.core.model.PageRef;
 import com.semanticcms.core.pages.CaptureLevel;
 import com.semanticcms.core.pages.PageRepository;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -69,6 +84,85 @@ public abstract class LocalPageRepository implements PageRepository {
   protected final Path path;
   protected final String prefix;
 
+  private volatile CaptureCache captureCache;
+
+  private volatile CaptureMetrics captureMetrics;
+
+  /**
+   * The maximum number of cached dispatcher resolutions.  The resolutions are cleared when reached,
+   * which bounds memory when many non-existent paths are requested.
+   */
+  private static final int MAX_RESOLUTIONS = 100000;
+
+  /**
+   * How long a page is remembered as missing before the resource lookup is repeated.  A new resource has no
+   * previous last-modified time to compare with, so misses are expired by time instead.
+   */
+  private static final long MISS_TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  /**
+   * The result of {@link #getRequestDispatcher(com.aoapps.net.Path)}, or a known missing page when
+   * {@link #requestDispatcherPath} is {@code null}.
+   */
+  private static final class Resolution {
+
+    private final String requestDispatcherPath;
+    private final RequestDispatcher dispatcher;
+
+    /**
+     * The last-modified time of the resource when resolved.
+     */
+    private final long lastModified;
+
+    /**
+     * The {@link System#nanoTime()} a missing page was resolved.
+     */
+    private final long missNanos;
+
+    private Resolution(String requestDispatcherPath, RequestDispatcher dispatcher, long lastModified, long missNanos) {
+      this.requestDispatcherPath = requestDispatcherPath;
+      this.dispatcher = dispatcher;
+      this.lastModified = lastModified;
+      this.missNanos = missNanos;
+    }
+  }
+
+  private final ConcurrentMap<Path, Resolution> resolutions = new ConcurrentHashMap<>();
+
+  /**
+   * The pages whose captures depend on each resource, including their own resource.
+   */
+  private final ConcurrentMap<String, Set<Path>> resourceDependents = new ConcurrentHashMap<>();
+
+  /**
+   * The pages whose captures depend on each other page, keyed at {@link CaptureLevel#PAGE} for all levels.
+   */
+  private final ConcurrentMap<CaptureCache.Key, Set<Path>> pageDependents = new ConcurrentHashMap<>();
+
+  /**
+   * The watcher of the resources or {@code null} when not watching.
+   */
+  private volatile ResourceWatcher resourceWatcher;
+
+  /**
+   * The default time to wait for a concurrent capture of the same page.
+   *
+   * @see  #setSingleFlightTimeout(long, java.util.concurrent.TimeUnit)
+   */
+  public static final long DEFAULT_SINGLE_FLIGHT_TIMEOUT_SECONDS = 30;
+
+  private volatile long singleFlightTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_SINGLE_FLIGHT_TIMEOUT_SECONDS);
+
+  /**
+   * A capture in progress, which other threads may wait on instead of performing the same capture.
+   */
+  private static final class Flight {
+
+    private final CompletableFuture<Page> result = new CompletableFuture<>();
+  }
+
+  private final ConcurrentMap<CaptureCache.Key, Flight> flights = new ConcurrentHashMap<>();
+
   protected LocalPageRepository(ServletContext servletContext, Path path) {
     this.servletContext = servletContext;
     this.cache = ServletContextCache.getInstance(servletContext);
@@ -106,79 +200,832 @@ public abstract class LocalPageRepository implements PageRepository {
     return true;
   }
 
+  /**
+   * Gets the cache of captured pages or {@code null} when captures are not cached.
+   */
+  public CaptureCache getCaptureCache() {
+    return captureCache;
+  }
+
+  /**
+   * Sets the cache of captured pages.  A single cache may be shared between repositories.
+   *
+   * <p>Cached pages are shared between requests, so should only be enabled when the captured
+   * pages do not vary by request.</p>
+   *
+   * @param  captureCache  The cache or {@code null} to capture pages on every call.
+   */
+  public void setCaptureCache(CaptureCache captureCache) {
+    this.captureCache = captureCache;
+  }
+
+  private CaptureCache requireCaptureCache() throws IllegalStateException {
+    CaptureCache myCaptureCache = captureCache;
+    if (myCaptureCache == null) {
+      throw new IllegalStateException("No capture cache");
+    }
+    return myCaptureCache;
+  }
+
+  /**
+   * Writes the capture cache to a snapshot file, to be read on restart.
+   * When the cache is shared between repositories, all of its entries are written.
+   *
+   * @param  buildHash  Identifies the build of the application, such as a version or build timestamp
+   * @param  codec      Encodes the pages, such as {@link CaptureSnapshot#SERIALIZATION}
+   *
+   * @return  The number of pages written, excluding any pages the codec cannot encode
+   *
+   * @throws  IllegalStateException  when no capture cache is set
+   *
+   * @see  CaptureSnapshot#write(com.semanticcms.core.pages.local.CaptureCache, java.nio.file.Path, java.lang.String, com.semanticcms.core.pages.local.CaptureSnapshot.PageCodec)
+   */
+  public int writeCaptureSnapshot(java.nio.file.Path file, String buildHash, CaptureSnapshot.PageCodec codec)
+      throws IllegalStateException, IOException {
+    return CaptureSnapshot.write(requireCaptureCache(), file, buildHash, codec);
+  }
+
+  /**
+   * Reads a snapshot file into the capture cache.  Pages whose resources have changed since the snapshot
+   * are captured again when requested.  Restored pages have no recorded dependencies, so are not evicted by
+   * changes to the other resources or pages they depend on.
+   *
+   * @param  buildHash  Identifies the build of the application.  The snapshot is ignored when written
+   *                    by a different build.
+   * @param  codec      Decodes the pages, which must be the codec the snapshot was written with
+   *
+   * @return  The number of pages read
+   *
+   * @throws  IllegalStateException  when no capture cache is set
+   *
+   * @see  CaptureSnapshot#read(com.semanticcms.core.pages.local.CaptureCache, java.nio.file.Path, java.lang.String, com.semanticcms.core.pages.local.CaptureSnapshot.PageCodec)
+   */
+  public int readCaptureSnapshot(java.nio.file.Path file, String buildHash, CaptureSnapshot.PageCodec codec)
+      throws IllegalStateException, IOException {
+    return CaptureSnapshot.read(requireCaptureCache(), file, buildHash, codec);
+  }
+
+  /**
+   * Gets the metrics receiving the timings and counts of captures or {@code null} when not collected.
+   */
+  public CaptureMetrics getCaptureMetrics() {
+    return captureMetrics;
+  }
+
+  /**
+   * Sets the metrics receiving the timings and counts of captures.
+   * A Java Flight Recorder {@code com.semanticcms.core.pages.local.Capture} event is also produced
+   * for each capture, independent of these metrics.
+   *
+   * @param  captureMetrics  The metrics or {@code null} to not collect metrics.
+   */
+  public void setCaptureMetrics(CaptureMetrics captureMetrics) {
+    this.captureMetrics = captureMetrics;
+  }
+
+  /**
+   * Gets how long, in the given unit, a thread waits for a concurrent capture of the same page.
+   *
+   * @return  The timeout or {@code 0} when single-flight captures are disabled.
+   */
+  public long getSingleFlightTimeout(TimeUnit unit) {
+    return unit.convert(singleFlightTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sets how long a thread waits for a concurrent capture of the same page.  When a page is not in the
+   * {@linkplain #setCaptureCache(com.semanticcms.core.pages.local.CaptureCache) capture cache}, only the
+   * first thread captures it, while any other threads requesting the same page and level wait for and share
+   * its result, including any failure.  A thread that times out performs its own capture.
+   * Captures requested from within another capture never wait, since the capture being waited on may
+   * itself be waiting on the enclosing capture, such as pages that capture each other or a capture
+   * waiting on its own {@linkplain #getPages(java.util.Collection, com.semanticcms.core.pages.CaptureLevel,
+   * java.util.concurrent.Executor) parallel captures}.
+   *
+   * <p>This only applies when a capture cache is set, since cached pages are already shared between requests.</p>
+   *
+   * @param  timeout  The timeout or {@code 0} to disable single-flight captures.
+   */
+  public void setSingleFlightTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout < 0: " + timeout);
+    }
+    this.singleFlightTimeoutNanos = unit.toNanos(timeout);
+  }
+
   @Override
   public Page getPage(Path path, CaptureLevel level) throws IOException {
+    Capturer capturer = new Capturer();
+    try {
+      return getPage(path, level, capturer);
+    } finally {
+      capturer.close();
+    }
+  }
+
+  /**
+   * Captures a page in streaming mode, passing the page and its element and link events to the given listener
+   * instead of returning the page.  The page is still built in full while captured, but it is not retained
+   * afterwards, so memory does not accumulate when streaming through many pages.
+   *
+   * <p>Streaming captures always include the page resource: they neither use nor populate the capture cache
+   * or the pages remembered for the current request.</p>
+   *
+   * @return  {@code true} when the page was captured or {@code false} when the page does not exist.
+   *
+   * @see  CaptureContext#getListener()
+   */
+  public boolean capturePage(Path path, CaptureLevel level, CaptureListener listener) throws IOException {
+    NullArgumentException.checkNotNull(listener, "listener");
+    Resolution resolution = resolve(path);
+    String requestDispatcherPath = resolution.requestDispatcherPath;
+    if (requestDispatcherPath == null) {
+      return false;
+    }
+    Capturer capturer = new Capturer();
+    try {
+      capturer.capture(path, requestDispatcherPath, resolution.dispatcher, level, new CaptureContext(listener));
+    } finally {
+      capturer.close();
+    }
+    return true;
+  }
+
+  /**
+   * Captures all pages produced by a single include of a page resource, such as a composite page that
+   * includes the pages of a whole chapter.  This avoids a separate include, with its set-up, per page.
+   *
+   * <p>The captured pages neither use nor populate the capture cache or the pages remembered for the current
+   * request, since the set of pages depends on the resource.</p>
+   *
+   * @return  The pages, in capture order, or {@code null} when the page does not exist.
+   *
+   * @see  CaptureContext#getCapturedPages()
+   */
+  public Map<PageRef, Page> capturePages(Path path, CaptureLevel level) throws IOException {
+    Resolution resolution = resolve(path);
+    String requestDispatcherPath = resolution.requestDispatcherPath;
+    if (requestDispatcherPath == null) {
+      return null;
+    }
+    CaptureContext captureContext = new CaptureContext(null, true);
+    Capturer capturer = new Capturer();
+    try {
+      capturer.capture(path, requestDispatcherPath, resolution.dispatcher, level, captureContext);
+    } finally {
+      capturer.close();
+    }
+    return captureContext.getCapturedPages();
+  }
+
+  /**
+   * Gets multiple pages in a single pass.  The subrequest, subresponse, and serialization are set-up once
+   * and shared by all captures, with only the per-page state reset between each include.
+   *
+   * @return  The pages, in iteration order of {@code paths}, excluding any pages that do not exist.
+   *
+   * @see  #getPage(com.aoapps.net.Path, com.semanticcms.core.pages.CaptureLevel)
+   */
+  public Map<Path, Page> getPages(Collection<? extends Path> paths, CaptureLevel level) throws IOException {
+    Map<Path, Page> pages = new LinkedHashMap<>();
+    Capturer capturer = new Capturer();
+    try {
+      for (Path pagePath : paths) {
+        if (!pages.containsKey(pagePath)) {
+          Page page = getPage(pagePath, level, capturer);
+          if (page != null) {
+            pages.put(pagePath, page);
+          }
+        }
+      }
+    } finally {
+      capturer.close();
+    }
+    return pages;
+  }
+
+  /**
+   * Gets multiple pages in parallel.  Each page is captured by a separate task on the given executor,
+   * with each task having its own subrequest, subresponse, page context, and capture context.
+   * This method blocks until all pages are captured.
+   *
+   * <p>The subrequests and subresponses are created on the calling thread, while the current page context
+   * is still valid.  Any failed capture cancels the remaining tasks, then waits for any tasks already
+   * running, so no capture outlives the current request.</p>
+   *
+   * @param  executor  The executor to run captures on, such as a fixed-size pool or
+   *                   a virtual thread per task executor.  Must eventually run every task it accepts.
+   *
+   * @return  The pages, in iteration order of {@code paths}, excluding any pages that do not exist.
+   *
+   * @see  #getPages(java.util.Collection, com.semanticcms.core.pages.CaptureLevel)
+   */
+  public Map<Path, Page> getPages(
+      Collection<? extends Path> paths,
+      CaptureLevel level,
+      Executor executor
+  ) throws IOException {
+    HttpServletRequest request = PageContext.getRequest();
+    HttpServletResponse response = PageContext.getResponse();
+    // Create before the subrequests, so shared by all tasks
+    CaptureMemo.getInstance(request);
+    Set<Path> uniquePaths = new LinkedHashSet<>(paths);
+    // Counted down as each task ends, since running tasks include through wrappers of the request and response
+    CountDownLatch ended = new CountDownLatch(uniquePaths.size());
+    int submitted = 0;
+    Map<Path, FutureTask<Page>> tasks = new LinkedHashMap<>();
+    try {
+      for (Path pagePath : uniquePaths) {
+        CaptureHttpServletRequest taskRequest = new CaptureHttpServletRequest(request);
+        CaptureHttpServletResponse taskResponse = new CaptureHttpServletResponse(response);
+        FutureTask<Page> task = new FutureTask<>(() -> PageContext.newPageContext(
+            servletContext,
+            taskRequest,
+            taskResponse,
+            () -> getPage(pagePath, level)
+        ));
+        tasks.put(pagePath, task);
+        executor.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            ended.countDown();
+          }
+        });
+        submitted++;
+      }
+      Map<Path, Page> pages = new LinkedHashMap<>();
+      for (Map.Entry<Path, FutureTask<Page>> entry : tasks.entrySet()) {
+        Page page = entry.getValue().get();
+        if (page != null) {
+          pages.put(entry.getKey(), page);
+        }
+      }
+      return pages;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ioErr = new InterruptedIOException();
+      ioErr.initCause(e);
+      throw ioErr;
+    } catch (ExecutionException e) {
+      throw Throwables.wrap(e.getCause(), IOException.class, IOException::new);
+    } finally {
+      // Cancel any remaining tasks on failure, no-op on success
+      for (FutureTask<Page> task : tasks.values()) {
+        task.cancel(false);
+      }
+      // Tasks never submitted will not count down
+      for (int i = submitted; i < uniquePaths.size(); i++) {
+        ended.countDown();
+      }
+      // Wait for any tasks already running, even when interrupted
+      boolean interrupted = false;
+      while (true) {
+        try {
+          ended.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Resolves the {@link RequestDispatcher} for a page, remembering both found and missing pages.
+   * Found pages are re-resolved when the last-modified time of their resource changes,
+   * as reported by {@link ServletContextCache}.  Missing pages are re-resolved after {@link #MISS_TTL_NANOS}.
+   *
+   * @return  The resolution, with a {@code null} {@link Resolution#requestDispatcherPath} when the page does not exist
+   */
+  private Resolution resolve(Path path) throws IOException {
+    Resolution resolution = resolutions.get(path);
+    if (resolution != null) {
+      if (resourceWatcher != null) {
+        // Invalidated by the watcher
+        return resolution;
+      }
+      if (resolution.requestDispatcherPath == null) {
+        if (System.nanoTime() - resolution.missNanos < MISS_TTL_NANOS) {
+          return resolution;
+        }
+      } else if (cache.getLastModified(resolution.requestDispatcherPath) == resolution.lastModified) {
+        return resolution;
+      }
+    }
     Tuple2<String, RequestDispatcher> pathAndRequestDispatcher = getRequestDispatcher(path);
     if (pathAndRequestDispatcher == null) {
+      resolution = new Resolution(null, null, 0, System.nanoTime());
+    } else {
+      String requestDispatcherPath = pathAndRequestDispatcher.getElement1();
+      resolution = new Resolution(
+          requestDispatcherPath,
+          pathAndRequestDispatcher.getElement2(),
+          cache.getLastModified(requestDispatcherPath),
+          0
+      );
+    }
+    if (resolutions.size() >= MAX_RESOLUTIONS) {
+      resolutions.clear();
+    }
+    resolutions.put(path, resolution);
+    return resolution;
+  }
+
+  /**
+   * Forgets all remembered dispatcher resolutions, both found and missing pages.
+   * This is only needed when {@link #getRequestDispatcher(com.aoapps.net.Path)} would now resolve differently
+   * for reasons other than changes to the resources themselves.
+   */
+  public void clearRequestDispatcherCache() {
+    resolutions.clear();
+  }
+
+  /**
+   * Starts watching the resources of this repository for changes, which then invalidate the affected dispatcher
+   * resolutions and captured pages.  While watching, the last-modified times of resources are not checked when
+   * getting pages, so lookups do not access the filesystem.
+   *
+   * <p>Captures are invalidated when any of their recorded resource dependencies change, including the fragments
+   * included through the capture request.  Resources read by other means must be recorded with
+   * {@link CaptureContext#addResourceDependency(java.lang.String)} to invalidate the capture when changed.</p>
+   *
+   * <p>Only possible when the repository has a real directory, such as an exploded web application.</p>
+   *
+   * <p>The watcher runs on its own thread, which is not tied to the lifecycle of the servlet context.
+   * {@link #stopWatching()} must be called when the application is stopped, such as from
+   * {@link javax.servlet.ServletContextListener#contextDestroyed(javax.servlet.ServletContextEvent)}.</p>
+   *
+   * @return  {@code true} when watching or {@code false} when the repository has no real directory.
+   *
+   * @see  #stopWatching()
+   */
+  public synchronized boolean startWatching() throws IOException {
+    if (resourceWatcher == null) {
+      String realPath = servletContext.getRealPath(path.toString());
+      if (realPath == null) {
+        return false;
+      }
+      java.nio.file.Path root = java.nio.file.Paths.get(realPath);
+      if (!java.nio.file.Files.isDirectory(root)) {
+        return false;
+      }
+      // Resolutions remembered before watching may already be stale
+      resolutions.clear();
+      resourceWatcher = new ResourceWatcher(this, root);
+    }
+    return true;
+  }
+
+  /**
+   * Stops watching the resources of this repository, returning to last-modified checks.
+   */
+  public synchronized void stopWatching() throws IOException {
+    ResourceWatcher watcher = resourceWatcher;
+    if (watcher != null) {
+      resourceWatcher = null;
+      watcher.close();
+    }
+  }
+
+  /**
+   * Checks if currently watching the resources of this repository.
+   */
+  public boolean isWatching() {
+    return resourceWatcher != null;
+  }
+
+  /**
+   * Called by the watcher when a resource has been created, modified, or deleted.
+   *
+   * @param  created  When a resource is created, any missing pages are resolved again.
+   */
+  void resourceChanged(String resourcePath, boolean created) {
+    if (created) {
+      resolutions.values().removeIf(resolution -> resolution.requestDispatcherPath == null);
+    }
+    invalidateResource(resourcePath);
+  }
+
+  /**
+   * Called by the watcher when a directory has been deleted or moved, since no events are reported for the
+   * resources within it.  Invalidates all resources known to be within the directory.
+   */
+  void resourceDirectoryDeleted(String resourceDirPath) {
+    String dirPrefix = resourceDirPath + '/';
+    Set<String> resourcePaths = new HashSet<>();
+    for (Resolution resolution : resolutions.values()) {
+      String requestDispatcherPath = resolution.requestDispatcherPath;
+      if (requestDispatcherPath != null && requestDispatcherPath.startsWith(dirPrefix)) {
+        resourcePaths.add(requestDispatcherPath);
+      }
+    }
+    for (String resourcePath : resourceDependents.keySet()) {
+      if (resourcePath.startsWith(dirPrefix)) {
+        resourcePaths.add(resourcePath);
+      }
+    }
+    for (String resourcePath : resourcePaths) {
+      invalidateResource(resourcePath);
+    }
+  }
+
+  /**
+   * Called by the watcher when its thread ends.  When it ended unexpectedly, stops watching, since changes
+   * would otherwise be missed, and forgets everything that may have been missed.
+   */
+  synchronized void watcherStopped(ResourceWatcher watcher) {
+    if (resourceWatcher == watcher) {
+      resourceWatcher = null;
+      resourcesOverflowed();
+    }
+  }
+
+  /**
+   * Called by the watcher when changes may have been missed.
+   */
+  void resourcesOverflowed() {
+    resolutions.clear();
+    resourceDependents.clear();
+    pageDependents.clear();
+    CaptureCache myCaptureCache = captureCache;
+    if (myCaptureCache != null) {
+      myCaptureCache.clear();
+    }
+  }
+
+  /**
+   * Gets a page from, in order: the pages already captured in this request, the capture cache,
+   * or a new capture.  Both the pages of the request and the capture cache return a page captured at a
+   * higher level in place of the requested level, so promotion happens with or without a capture cache.
+   */
+  private Page getPage(Path path, CaptureLevel level, Capturer capturer) throws IOException {
+    HttpServletRequest request = PageContext.getRequest();
+    CaptureMemo memo = CaptureMemo.getInstance(request);
+    CaptureCache.Key key = new CaptureCache.Key(prefix, path, level);
+    // Record dependency of any enclosing capture
+    CaptureContext enclosingCaptureContext = CaptureContext.getCaptureContext(request);
+    if (enclosingCaptureContext != null) {
+      enclosingCaptureContext.addPageDependency(key);
+    }
+    Page page = memo.get(key);
+    if (page != null) {
+      return page;
+    }
+    Resolution resolution = resolve(path);
+    final String requestDispatcherPath = resolution.requestDispatcherPath;
+    if (requestDispatcherPath == null) {
       return null;
     }
-    final String requestDispatcherPath = pathAndRequestDispatcher.getElement1();
-    final RequestDispatcher dispatcher = pathAndRequestDispatcher.getElement2();
-    try {
-      HttpServletRequest request = PageContext.getRequest();
-      HttpServletResponse response = PageContext.getResponse();
-      final IHttpServletSubRequest subRequest;
-      if (request instanceof IHttpServletSubRequest) {
-        subRequest = (IHttpServletSubRequest) request;
-      } else {
-        subRequest = new HttpServletSubRequestWrapper(request);
-      }
-      final IHttpServletSubResponse subResponse;
-      if (response instanceof IHttpServletSubResponse) {
-        subResponse = (IHttpServletSubResponse) response;
-      } else {
-        subResponse = new HttpServletSubResponseWrapper(response, TempFileContextEE.get(request));
-      }
-      // Clear request values that break captures
-      CurrentNode.setCurrentNode(subRequest, null);
-      CurrentPage.setCurrentPage(subRequest, null);
-      // Set the content type
-      Serialization currentSerialization = SerializationEE.getDefault(servletContext, subRequest);
-      SerializationEE.set(subRequest, currentSerialization);
-      ServletUtil.setContentType(subResponse, currentSerialization.getContentType(), /*AnyDocument.*/ENCODING);
-      // Set the default doctype for all captures
-      DoctypeEE.set(subRequest, Doctype.DEFAULT);
-      // Set new capture context
-      CurrentCaptureLevel.setCaptureLevel(subRequest, level);
-      CaptureContext captureContext = new CaptureContext();
-      CaptureContext.REQUEST_ATTRIBUTE.context(subRequest).set(captureContext);
-      // Always capture as "GET" request
-      subRequest.setMethod(HttpServletUtil.METHOD_GET);
-      // TODO: Set more "current" for request and response
-      // TODO: Is PageContext useful for this?
-      // TODO: capturedPage = repository.capturePage(pageRef.getPath(), level);
-      // Include the page resource, discarding any direct output
-      try {
-        // Clear PageContext on include
-        PageContext.newPageContextSkip(
-            null,
-            null,
-            null,
-            () -> Dispatcher.include(
-                requestDispatcherPath,
-                dispatcher,
-                subRequest,
-                // Discard all output
-                new NullHttpServletResponseWrapper(subResponse)
-            )
+    final RequestDispatcher dispatcher = resolution.dispatcher;
+    CaptureCache myCaptureCache = captureCache;
+    if (myCaptureCache == null) {
+      page = capturer.capture(path, requestDispatcherPath, dispatcher, level, new CaptureContext());
+    } else {
+      long lastModified = resolution.lastModified;
+      page = myCaptureCache.get(key, lastModified);
+      CaptureMetrics metrics = captureMetrics;
+      if (page == null) {
+        if (metrics != null) {
+          metrics.cacheMiss(this, path, level);
+        }
+        page = captureSingleFlight(
+            myCaptureCache,
+            key,
+            lastModified,
+            capturer,
+            path,
+            requestDispatcherPath,
+            dispatcher,
+            enclosingCaptureContext == null
         );
-      } catch (SkipPageException e) {
-        // An individual page may throw SkipPageException which only terminates
-        // the capture, not the request overall
+      } else if (metrics != null) {
+        metrics.cacheHit(this, path, level);
       }
-      Page capturedPage = captureContext.getCapturedPage();
-      if (capturedPage == null) {
-        throw new ServletException("No page captured, page=" + requestDispatcherPath);
+    }
+    memo.put(key, page);
+    return page;
+  }
+
+  /**
+   * Captures a page and adds it to the cache, sharing the capture with any other threads concurrently
+   * requesting the same key.  Threads wait on the first thread, unless within another capture, which could
+   * otherwise deadlock when the first thread is in turn waiting on the enclosing capture.
+   *
+   * @param  wait  Whether to wait on a concurrent capture, {@code false} when within another capture
+   *
+   * @see  #setSingleFlightTimeout(long, java.util.concurrent.TimeUnit)
+   */
+  private Page captureSingleFlight(
+      CaptureCache captureCache,
+      CaptureCache.Key key,
+      long lastModified,
+      Capturer capturer,
+      Path path,
+      String requestDispatcherPath,
+      RequestDispatcher dispatcher,
+      boolean wait
+  ) throws IOException {
+    final long timeoutNanos = singleFlightTimeoutNanos;
+    if (timeoutNanos > 0) {
+      Flight flight = new Flight();
+      Flight existing = flights.putIfAbsent(key, flight);
+      if (existing == null) {
+        try {
+          Page page = captureAndCache(
+              captureCache,
+              key,
+              lastModified,
+              capturer,
+              path,
+              requestDispatcherPath,
+              dispatcher
+          );
+          flight.result.complete(page);
+          return page;
+        } catch (Throwable t) {
+          flight.result.completeExceptionally(t);
+          throw t;
+        } finally {
+          flights.remove(key, flight);
+        }
+      } else if (wait) {
+        try {
+          return existing.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          InterruptedIOException ioErr = new InterruptedIOException();
+          ioErr.initCause(e);
+          throw ioErr;
+        } catch (ExecutionException e) {
+          throw Throwables.wrap(e.getCause(), IOException.class, IOException::new);
+        } catch (TimeoutException e) {
+          // Fall-through to capture on this thread
+        }
+      }
+    }
+    return captureAndCache(captureCache, key, lastModified, capturer, path, requestDispatcherPath, dispatcher);
+  }
+
+  /**
+   * Captures a page, adds it to the cache, and records its dependencies.
+   */
+  private Page captureAndCache(
+      CaptureCache captureCache,
+      CaptureCache.Key key,
+      long lastModified,
+      Capturer capturer,
+      Path path,
+      String requestDispatcherPath,
+      RequestDispatcher dispatcher
+  ) throws IOException {
+    CaptureContext captureContext = new CaptureContext();
+    Page page = capturer.capture(path, requestDispatcherPath, dispatcher, key.getLevel(), captureContext);
+    // Recorded first, since the cache may be cleared when the dependency index is full
+    recordDependencies(captureCache, path, requestDispatcherPath, captureContext);
+    captureCache.put(key, lastModified, page);
+    return page;
+  }
+
+  /**
+   * Adds a capture to the reverse dependency index.  Dependencies from any previous captures of the page are
+   * retained, which may only cause extra invalidations.
+   *
+   * <p>The index is bounded.  When full, it is dropped along with the capture cache, since any capture
+   * whose dependencies are dropped would no longer be invalidated when they change.</p>
+   */
+  private void recordDependencies(
+      CaptureCache captureCache,
+      Path path,
+      String requestDispatcherPath,
+      CaptureContext captureContext
+  ) {
+    if (resourceDependents.size() + pageDependents.size() >= MAX_RESOLUTIONS) {
+      // Bound memory, dropping dependencies would miss invalidations unless the captures are dropped, too
+      resourceDependents.clear();
+      pageDependents.clear();
+      captureCache.clear();
+    }
+    resourceDependents.computeIfAbsent(requestDispatcherPath, k -> ConcurrentHashMap.newKeySet()).add(path);
+    for (String resourcePath : captureContext.getResourceDependencies()) {
+      resourceDependents.computeIfAbsent(resourcePath, k -> ConcurrentHashMap.newKeySet()).add(path);
+    }
+    for (CaptureCache.Key pageKey : captureContext.getPageDependencies()) {
+      pageDependents
+          .computeIfAbsent(pageKey.withLevel(CaptureLevel.PAGE), k -> ConcurrentHashMap.newKeySet())
+          .add(path);
+    }
+  }
+
+  /**
+   * Invalidates all captures that depend on the given resource, directly or through other pages, along with
+   * the dispatcher resolutions of pages resolved to the resource.
+   *
+   * <p>This is called automatically while {@linkplain #startWatching() watching}, and may otherwise be called
+   * when a resource is known to have changed.  Dependencies on pages of other repositories sharing the same
+   * cache are only followed when those repositories are also notified.</p>
+   *
+   * @param  resourcePath  The path of the resource within the servlet context
+   */
+  public void invalidateResource(String resourcePath) {
+    Set<Path> invalidated = new HashSet<>();
+    Deque<Path> pending = new ArrayDeque<>();
+    for (Map.Entry<Path, Resolution> entry : resolutions.entrySet()) {
+      Resolution resolution = entry.getValue();
+      if (resourcePath.equals(resolution.requestDispatcherPath)) {
+        resolutions.remove(entry.getKey(), resolution);
+        pending.add(entry.getKey());
+      }
+    }
+    Set<Path> direct = resourceDependents.remove(resourcePath);
+    if (direct != null) {
+      pending.addAll(direct);
+    }
+    CaptureCache myCaptureCache = captureCache;
+    Path pagePath;
+    while ((pagePath = pending.poll()) != null) {
+      if (invalidated.add(pagePath)) {
+        if (myCaptureCache != null) {
+          for (CaptureLevel level : CaptureLevel.values()) {
+            myCaptureCache.remove(new CaptureCache.Key(prefix, pagePath, level));
+          }
+        }
+        Set<Path> dependents = pageDependents.remove(new CaptureCache.Key(prefix, pagePath, CaptureLevel.PAGE));
+        if (dependents != null) {
+          pending.addAll(dependents);
+        }
+      }
+    }
+  }
+
+  /**
+   * Captures pages by including their resources, discarding any direct output.
+   * The subrequest environment is set-up on first capture, from the per-request {@link CapturePool},
+   * then reused for any further captures until {@link #close()}.
+   *
+   * <p>Not thread-safe: must be used on a single thread within a single page context.</p>
+   */
+  private final class Capturer {
+
+    private CapturePool pool;
+    private CaptureHttpServletRequest subRequest;
+    private CaptureHttpServletResponse captureResponse;
+    private Serialization serialization;
+
+    /**
+     * Returns the subrequest and subresponse to the pool.  Must be called on the same thread as the captures.
+     */
+    private void close() {
+      if (subRequest != null) {
+        pool.release(subRequest);
+        pool.release(captureResponse);
+        subRequest = null;
+        captureResponse = null;
+        pool = null;
+      }
+    }
+
+    private Page capture(
+        Path path,
+        String requestDispatcherPath,
+        RequestDispatcher dispatcher,
+        CaptureLevel level,
+        CaptureContext captureContext
+    ) throws IOException {
+      final CaptureMetrics metrics = captureMetrics;
+      final long startNanos = metrics == null ? 0 : System.nanoTime();
+      final CaptureEvent event = new CaptureEvent();
+      event.begin();
+      try {
+        if (subRequest == null) {
+          HttpServletRequest request = PageContext.getRequest();
+          HttpServletResponse response = PageContext.getResponse();
+          final CapturePool newPool = CapturePool.getInstance(request);
+          // Isolate attribute changes, without modifying the request
+          final CaptureHttpServletRequest newSubRequest = newPool.acquire(request);
+          // Discard all output, without modifying the response
+          final CaptureHttpServletResponse newCaptureResponse = newPool.acquire(response);
+          pool = newPool;
+          captureResponse = newCaptureResponse;
+          subRequest = newSubRequest;
+          // Set the content type
+          serialization = SerializationEE.getDefault(servletContext, newSubRequest);
+          ServletUtil.setContentType(newCaptureResponse, serialization.getContentType(), /*AnyDocument.*/ENCODING);
+        } else {
+          // Discard any attributes and response state set by the previous capture of the batch
+          subRequest.reset((HttpServletRequest) subRequest.getRequest());
+          captureResponse.reset((HttpServletResponse) captureResponse.getResponse());
+          ServletUtil.setContentType(captureResponse, serialization.getContentType(), /*AnyDocument.*/ENCODING);
+        }
+        // Clear request values that break captures, written directly to the local attributes and current state
+        subRequest.setLocalAttribute(CurrentNode.REQUEST_ATTRIBUTE_NAME, null);
+        subRequest.setLocalAttribute(CurrentPage.REQUEST_ATTRIBUTE_NAME, null);
+        SerializationEE.set(subRequest, serialization);
+        // Set the default doctype for all captures
+        DoctypeEE.set(subRequest, Doctype.DEFAULT);
+        // Set new capture context
+        subRequest.setLocalAttribute(CurrentCaptureLevel.CAPTURE_LEVEL_REQUEST_ATTRIBUTE_NAME, level);
+        subRequest.setLocalAttribute(CaptureContext.REQUEST_ATTRIBUTE_NAME, captureContext);
+        // Always capture as "GET" request
+        subRequest.setMethod(HttpServletUtil.METHOD_GET);
+        // TODO: Set more "current" for request and response
+        // TODO: Is PageContext useful for this?
+        // TODO: capturedPage = repository.capturePage(pageRef.getPath(), level);
+        // Include the page resource, discarding any direct output
+        captureResponse.resetDiscarded();
+        boolean skipped = false;
+        try {
+          // Clear PageContext on include
+          PageContext.newPageContextSkip(
+              null,
+              null,
+              null,
+              () -> Dispatcher.include(
+                  requestDispatcherPath,
+                  dispatcher,
+                  subRequest,
+                  captureResponse
+              )
+          );
+        } catch (SkipPageException e) {
+          // An individual page may throw SkipPageException which only terminates
+          // the capture, not the request overall
+          skipped = true;
+        }
+        if (!captureContext.isPageCaptured()) {
+          throw new ServletException("No page captured, page=" + requestDispatcherPath);
+        }
+        long discarded = captureResponse.getDiscarded();
+        if (metrics != null) {
+          metrics.captured(LocalPageRepository.this, path, level, System.nanoTime() - startNanos, skipped, discarded);
+        }
+        commitEvent(event, path, requestDispatcherPath, level, skipped, discarded, null);
+        return captureContext.getCapturedPage();
+      } catch (ServletException e) {
+        if (metrics != null) {
+          metrics.failed(LocalPageRepository.this, path, level, System.nanoTime() - startNanos, e);
+        }
+        commitEvent(event, path, requestDispatcherPath, level, false, getDiscarded(), e);
+        throw new IOException(e);
+      } catch (IOException | RuntimeException | Error e) {
+        if (metrics != null) {
+          metrics.failed(LocalPageRepository.this, path, level, System.nanoTime() - startNanos, e);
+        }
+        commitEvent(event, path, requestDispatcherPath, level, false, getDiscarded(), e);
+        throw e;
+      }
+    }
+
+    /**
+     * Gets the output discarded by the current capture, or {@code 0} when failed before set-up.
+     */
+    private long getDiscarded() {
+      return (captureResponse == null) ? 0 : captureResponse.getDiscarded();
+    }
+
+    /**
+     * Ends and commits the event for a capture, when enabled.
+     *
+     * @param  failure  The exception the capture failed with or {@code null} when successful
+     */
+    private void commitEvent(
+        CaptureEvent event,
+        Path path,
+        String requestDispatcherPath,
+        CaptureLevel level,
+        boolean skipped,
+        long discarded,
+        Throwable failure
+    ) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.repository = LocalPageRepository.this.toString();
+        event.path = path.toString();
+        event.resource = requestDispatcherPath;
+        event.level = level.name();
+        event.skipped = skipped;
+        event.discarded = discarded;
+        if (failure != null) {
+          event.failed = true;
+          event.failure = failure.getClass().getName();
+        }
+        event.commit();
       }
-      return capturedPage;
-    } catch (ServletException e) {
-      throw new IOException(e);
     }
   }
 
   /**
    * Gets the path for the {@link RequestDispatcher} for the given path or {@code null}
    * if the page is known to not exist.
+   *
+   * <p>Results are remembered by the repository, so the returned {@link RequestDispatcher} must be
+   * reusable across requests and threads, as are those returned by
+   * {@link ServletContext#getRequestDispatcher(java.lang.String)}.</p>
+   *
+   * @see  #clearRequestDispatcherCache()
    */
   protected abstract Tuple2<String, RequestDispatcher> getRequestDispatcher(Path path) throws IOException;
 }
@@ -0,0 +1,217 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.lang.NullArgumentException;
+import com.semanticcms.core.model.Page;
+import com.semanticcms.core.pages.CaptureLevel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CaptureCache} holding up to a fixed number of pages, evicting the least recently used.
+ *
+ * <p>Pages captured from resources with an unknown last-modified time cannot be validated, so are only
+ * returned for a limited time after being cached.</p>
+ */
+public class LruCaptureCache implements CaptureCache {
+
+  /**
+   * The default maximum number of cached pages.
+   */
+  public static final int DEFAULT_MAX_SIZE = 10000;
+
+  /**
+   * The default time pages with an unknown last-modified time are returned for.
+   */
+  public static final long DEFAULT_UNKNOWN_TTL_SECONDS = 60;
+
+  private static final class Entry {
+
+    private final long lastModified;
+    private final Page page;
+    private final long cachedNanos;
+
+    private Entry(long lastModified, Page page, long cachedNanos) {
+      this.lastModified = lastModified;
+      this.page = page;
+      this.cachedNanos = cachedNanos;
+    }
+  }
+
+  private final int maxSize;
+  private final long unknownTtlNanos;
+
+  /**
+   * Access-ordered, all access synchronized on the map itself.
+   */
+  private final Map<Key, Entry> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param  unknownTtl  How long pages captured from resources with an unknown last-modified time
+   *                     are returned for
+   */
+  public LruCaptureCache(int maxSize, long unknownTtl, TimeUnit unit) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize < 1: " + maxSize);
+    }
+    if (unknownTtl < 0) {
+      throw new IllegalArgumentException("unknownTtl < 0: " + unknownTtl);
+    }
+    this.maxSize = maxSize;
+    this.unknownTtlNanos = unit.toNanos(unknownTtl);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > LruCaptureCache.this.maxSize;
+      }
+    };
+  }
+
+  public LruCaptureCache(int maxSize) {
+    this(maxSize, DEFAULT_UNKNOWN_TTL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  public LruCaptureCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Gets how long, in the given unit, pages captured from resources with an unknown last-modified time
+   * are returned for.
+   */
+  public long getUnknownTtl(TimeUnit unit) {
+    return unit.convert(unknownTtlNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static final CaptureLevel[] levels = CaptureLevel.values();
+
+  @Override
+  public Page get(Key key, long lastModified) {
+    Page page = null;
+    synchronized (entries) {
+      // Search from the requested level upward, since higher levels contain all lower levels
+      for (int i = key.getLevel().ordinal(); i < levels.length; i++) {
+        Key levelKey = key.withLevel(levels[i]);
+        Entry entry = entries.get(levelKey);
+        if (entry != null) {
+          if (
+              entry.lastModified == lastModified
+                  && (lastModified != 0 || System.nanoTime() - entry.cachedNanos < unknownTtlNanos)
+          ) {
+            page = entry.page;
+            break;
+          }
+          entries.remove(levelKey);
+        }
+      }
+    }
+    if (page == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return page;
+  }
+
+  @Override
+  public void put(Key key, long lastModified, Page page) {
+    NullArgumentException.checkNotNull(key, "key");
+    NullArgumentException.checkNotNull(page, "page");
+    Entry entry = new Entry(lastModified, page, System.nanoTime());
+    synchronized (entries) {
+      entries.put(key, entry);
+      // Remove superseded lower levels
+      for (int i = key.getLevel().ordinal() - 1; i >= 0; i--) {
+        entries.remove(key.withLevel(levels[i]));
+      }
+    }
+  }
+
+  @Override
+  public void remove(Key key) {
+    synchronized (entries) {
+      entries.remove(key);
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  @Override
+  public void forEach(EntryConsumer action) {
+    Key[] keys;
+    Entry[] values;
+    synchronized (entries) {
+      keys = entries.keySet().toArray(new Key[entries.size()]);
+      values = entries.values().toArray(new Entry[keys.length]);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      Entry entry = values[i];
+      action.accept(keys[i], entry.lastModified, entry.page);
+    }
+  }
+
+  @Override
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return LruCaptureCache.class.getSimpleName()
+        + "(size=" + size()
+        + ", maxSize=" + maxSize
+        + ", hits=" + getHits()
+        + ", misses=" + getMisses()
+        + ')';
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2016, 2017, 2018, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2016, 2017, 2018, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -51,13 +51,179 @@ public final class PageContext {
     throw new AssertionError();
   }
 
-  static final ThreadLocal<ServletContext> servletContext = new ThreadLocal<>();
+  /**
+   * How {@link #getOut()} writes to the response.
+   *
+   * @see  #setOutputMode(com.semanticcms.core.pages.local.PageContext.OutputMode)
+   */
+  public enum OutputMode {
+    /**
+     * Writes directly to the container's {@link HttpServletResponse#getWriter()}.
+     */
+    CONTAINER,
+
+    /**
+     * Writes through a {@link PageWriter}, which buffers output without locking and writes it to the
+     * container's {@link HttpServletResponse#getWriter()} in large chunks.  The buffer is flushed
+     * to the container's writer whenever a page context ends.
+     *
+     * <p>Any output written directly to the container's writer while the page context is active may be
+     * reordered with output written through {@link #getOut()}.  The writer must only be used by a single
+     * thread.</p>
+     */
+    BUFFERED,
+
+    /**
+     * Writes through a {@link PageWriter} that encodes characters as UTF-8 directly into a byte buffer,
+     * written to the container's {@link HttpServletResponse#getOutputStream()} in large chunks.  This skips
+     * the container's writer and character encoder.  {@link PageContextEncoder} writes escaped characters from
+     * precomputed UTF-8 entities.
+     *
+     * <p>Requires a response with {@link LocalPageRepository#ENCODING} and on which
+     * {@link HttpServletResponse#getWriter()} has not been called.  Otherwise as {@link #BUFFERED}.</p>
+     */
+    UTF8
+  }
+
+  /**
+   * One page context.  Each new context pushes a new frame into the single thread-local slot,
+   * and the previous frame is put back when the context ends.  This costs one thread-local lookup
+   * to establish a context and one to restore it.
+   */
+  static final class Frame {
+
+    private final ServletContext servletContext;
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+
+    /**
+     * The frame that caches the writer for this response: this frame or the nearest enclosing
+     * frame with the same response.
+     */
+    private final Frame outOwner;
+
+    /**
+     * The output mode.  Only used on the {@link #outOwner}.
+     */
+    private OutputMode outputMode = OutputMode.CONTAINER;
+
+    /**
+     * The response writer, looked-up on first use.  Only used on the {@link #outOwner}.
+     */
+    private PrintWriter out;
+
+    private Frame(
+        Frame parent,
+        ServletContext servletContext,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) {
+      this.servletContext = servletContext;
+      this.request = request;
+      this.response = response;
+      this.outOwner = (parent != null && parent.response == response) ? parent.outOwner : this;
+    }
+
+    private PrintWriter getOut() throws IllegalStateException, IOException {
+      Frame owner = outOwner;
+      PrintWriter o = owner.out;
+      if (o == null) {
+        if (response == null) {
+          throw new IllegalStateException("No page context");
+        }
+        switch (owner.outputMode) {
+          case CONTAINER:
+            o = response.getWriter();
+            break;
+          case BUFFERED:
+            o = new CharPageWriter(response.getWriter());
+            break;
+          case UTF8:
+            String characterEncoding = response.getCharacterEncoding();
+            if (!LocalPageRepository.ENCODING.name().equalsIgnoreCase(characterEncoding)) {
+              throw new IllegalStateException(
+                  "Output mode " + OutputMode.UTF8 + " requires " + LocalPageRepository.ENCODING
+                      + " response, but is " + characterEncoding
+              );
+            }
+            o = new Utf8PageWriter(response.getOutputStream());
+            break;
+          default:
+            throw new AssertionError("Unexpected output mode: " + owner.outputMode);
+        }
+        owner.out = o;
+      }
+      return o;
+    }
+
+    /**
+     * Writes any buffered output to the response.  Only called on the {@link #outOwner}, as it ends.
+     *
+     * @throws  IOException  when any error has occurred on the buffered writer
+     */
+    private void flushBuffer() throws IOException {
+      PrintWriter o = out;
+      if (o instanceof PageWriter) {
+        PageWriter pageWriter = (PageWriter) o;
+        pageWriter.flushBuffer();
+        pageWriter.checkResponseError();
+        pageWriter.checkIOException();
+      }
+    }
+  }
 
-  static final ThreadLocal<HttpServletRequest> request = new ThreadLocal<>();
+  static final ThreadLocal<Frame> frame = new ThreadLocal<>();
 
-  static final ThreadLocal<HttpServletResponse> response = new ThreadLocal<>();
+  /**
+   * Establishes a new page context, returning the previous frame to be restored.
+   * This is the single place where all forms of {@code newPageContext*} bind their values.
+   */
+  private static Frame enter(
+      ServletContext newServletContext,
+      HttpServletRequest newRequest,
+      HttpServletResponse newResponse
+  ) {
+    final Frame previous = frame.get();
+    if (previous == null) {
+      if (newServletContext != null || newRequest != null || newResponse != null) {
+        frame.set(new Frame(null, newServletContext, newRequest, newResponse));
+      }
+    } else if (
+        newServletContext != previous.servletContext
+            || newRequest != previous.request
+            || newResponse != previous.response
+    ) {
+      frame.set(new Frame(previous, newServletContext, newRequest, newResponse));
+    }
+    return previous;
+  }
 
-  static final ThreadLocal<PrintWriter> out = new ThreadLocal<>();
+  /**
+   * Ends the current page context, restoring the previous frame.  When the ending frame owns its output,
+   * any buffered output is written to the response.  Frames sharing the response of an enclosing frame
+   * leave the buffer to the enclosing frame, so output is still written in large chunks.
+   *
+   * @throws  IOException  when any error has occurred on the buffered writer
+   */
+  private static void exit(Frame previous) throws IOException {
+    Frame current = frame.get();
+    frame.set(previous);
+    if (current != previous && current != null && current.outOwner == current) {
+      current.flushBuffer();
+    }
+  }
+
+  /**
+   * Ends the current page context on failure.  Any error writing buffered output is added as suppressed,
+   * so does not hide the original failure.
+   */
+  private static void exit(Frame previous, Throwable t) {
+    try {
+      exit(previous);
+    } catch (IOException e) {
+      t.addSuppressed(e);
+    }
+  }
 
   @FunctionalInterface
   public static interface PageContextRunnable {
@@ -76,55 +242,14 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextRunnable target
   ) throws ServletException, IOException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
       target.run();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
   }
 
   public static <V> V newPageContext(
@@ -133,55 +258,16 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextCallable<V> target
   ) throws ServletException, IOException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
+    final V result;
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
-      return target.call();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+      result = target.call();
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
+    return result;
   }
 
   @FunctionalInterface
@@ -206,55 +292,14 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextRunnableSkip target
   ) throws ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
       target.run();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
   }
 
   /**
@@ -268,55 +313,16 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextCallableSkip<V> target
   ) throws ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
+    final V result;
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
-      return target.call();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+      result = target.call();
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
+    return result;
   }
 
   /**
@@ -346,55 +352,14 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextRunnableSkipE<Ex> target
   ) throws Ex, ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
       target.run();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
   }
 
   /**
@@ -407,55 +372,16 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextCallableSkipE<V, Ex> target
   ) throws Ex, ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
+    final V result;
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
-      return target.call();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+      result = target.call();
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
+    return result;
   }
 
   @FunctionalInterface
@@ -476,55 +402,14 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextRunnableSkipEE<Ex1, Ex2> target
   ) throws Ex1, Ex2, ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
       target.run();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
     }
+    exit(previous);
   }
 
   public static <V, Ex1 extends Exception, Ex2 extends Exception> V newPageContextSkipEE(
@@ -533,55 +418,29 @@ public final class PageContext {
       HttpServletResponse newResponse,
       PageContextCallableSkipEE<V, Ex1, Ex2> target
   ) throws Ex1, Ex2, ServletException, IOException, SkipPageException {
-    final ServletContext oldServletContext = servletContext.get();
-    final HttpServletRequest oldRequest = request.get();
-    final HttpServletResponse oldResponse = response.get();
-    final PrintWriter oldOut = out.get();
-    PrintWriter newOut = null;
+    final Frame previous = enter(newServletContext, newRequest, newResponse);
+    final V result;
     try {
-      if (newServletContext != oldServletContext) {
-        servletContext.set(newServletContext);
-      }
-      if (newRequest != oldRequest) {
-        request.set(newRequest);
-      }
-      if (newResponse != oldResponse) {
-        response.set(newResponse);
-        out.remove();
-      } else {
-        newOut = oldOut;
-      }
-      return target.call();
-    } finally {
-      if (newServletContext != oldServletContext) {
-        if (oldServletContext == null) {
-          servletContext.remove();
-        } else {
-          servletContext.set(oldServletContext);
-        }
-      }
-      if (newRequest != oldRequest) {
-        if (oldRequest == null) {
-          request.remove();
-        } else {
-          request.set(oldRequest);
-        }
-      }
-      if (newResponse != oldResponse) {
-        if (oldResponse == null) {
-          response.remove();
-        } else {
-          response.set(oldResponse);
-        }
-      }
-      if (newOut != oldOut) {
-        if (oldOut == null) {
-          out.remove();
-        } else {
-          out.set(oldOut);
-        }
-      }
+      result = target.call();
+    } catch (Throwable t) {
+      exit(previous, t);
+      throw t;
+    }
+    exit(previous);
+    return result;
+  }
+
+  /**
+   * Gets the current frame.
+   *
+   * @throws  IllegalStateException if no context set
+   */
+  private static Frame getFrame() throws IllegalStateException {
+    Frame f = frame.get();
+    if (f == null) {
+      throw new IllegalStateException("No page context");
     }
+    return f;
   }
 
   /**
@@ -590,7 +449,7 @@ public final class PageContext {
    * @throws  IllegalStateException if no context set
    */
   public static ServletContext getServletContext() throws IllegalStateException {
-    ServletContext s = servletContext.get();
+    ServletContext s = getFrame().servletContext;
     if (s == null) {
       throw new IllegalStateException("No page context");
     }
@@ -603,7 +462,7 @@ public final class PageContext {
    * @throws  IllegalStateException if no context set
    */
   public static HttpServletRequest getRequest() throws IllegalStateException {
-    HttpServletRequest r = request.get();
+    HttpServletRequest r = getFrame().request;
     if (r == null) {
       throw new IllegalStateException("No page context");
     }
@@ -616,24 +475,36 @@ public final class PageContext {
    * @throws  IllegalStateException if no context set
    */
   public static HttpServletResponse getResponse() throws IllegalStateException {
-    HttpServletResponse r = response.get();
+    HttpServletResponse r = getFrame().response;
     if (r == null) {
       throw new IllegalStateException("No page context");
     }
     return r;
   }
 
+  /**
+   * Sets how {@link #getOut()} writes to the current response.  Must be set before the writer is first
+   * used for the response.  Defaults to {@link OutputMode#CONTAINER}.
+   *
+   * @throws  IllegalStateException if no context set or the writer has already been obtained in a different mode
+   */
+  public static void setOutputMode(OutputMode outputMode) throws IllegalStateException {
+    Frame owner = getFrame().outOwner;
+    if (owner.outputMode != outputMode) {
+      if (owner.out != null) {
+        throw new IllegalStateException("Writer already obtained in output mode " + owner.outputMode);
+      }
+      owner.outputMode = outputMode;
+    }
+  }
+
   /**
    * Gets the current response writer.
+   * The writer is looked-up once per response and cached in the current frame.
    *
    * @throws  IllegalStateException if no context set
    */
   public static PrintWriter getOut() throws IllegalStateException, IOException {
-    PrintWriter o = out.get();
-    if (o == null) {
-      o = getResponse().getWriter();
-      out.set(o);
-    }
-    return o;
+    return getFrame().getOut();
   }
 }
@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2016, 2017, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2016, 2017, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -32,10 +32,7 @@ import java.util.concurrent.Callable;
 public class PageContextCallable<T> extends ThreadLocalsCallable<T> {
 
   static final ThreadLocal<?>[] threadLocals = {
-      PageContext.servletContext,
-      PageContext.request,
-      PageContext.response,
-      PageContext.out
+      PageContext.frame
   };
 
   public PageContextCallable(Callable<T> task) {
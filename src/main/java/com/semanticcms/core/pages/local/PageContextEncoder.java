@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2016, 2017, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2016, 2017, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,10 +27,17 @@ import com.aoapps.encoding.TextInXhtmlAttributeEncoder;
 import com.aoapps.encoding.TextInXhtmlEncoder;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Convenience access to encoding to current PageContext through static import.
  *
+ * <p>Runs of printable ASCII characters that need no escaping are written directly in bulk, with only the
+ * remaining characters passed to the encoders.  When the page context is in
+ * {@linkplain PageContext.OutputMode#UTF8 UTF-8 output mode}, escaped ASCII characters are written
+ * from precomputed UTF-8 entities.</p>
+ *
  * @see  PageContext
  * @see  PrintWriter
  */
@@ -41,24 +48,251 @@ public final class PageContextEncoder {
     throw new AssertionError();
   }
 
+  /**
+   * The ASCII characters written unchanged by {@link TextInXhtmlEncoder}.
+   */
+  private static final boolean[] textInXhtmlSafe = new boolean[128];
+
+  /**
+   * The ASCII characters written unchanged by {@link TextInXhtmlAttributeEncoder}.
+   */
+  private static final boolean[] textInXhtmlAttributeSafe = new boolean[128];
+
+  /**
+   * The UTF-8 encoded entities for the escaped ASCII characters of {@link TextInXhtmlEncoder}.
+   */
+  private static final byte[][] textInXhtmlEntities = new byte[128][];
+
+  /**
+   * The UTF-8 encoded entities for the escaped ASCII characters of {@link TextInXhtmlAttributeEncoder}.
+   */
+  private static final byte[][] textInXhtmlAttributeEntities = new byte[128][];
+
+  static {
+    // Control characters, including whitespace, are always left to the encoders
+    for (char ch = ' '; ch < 0x7F; ch++) {
+      boolean safe = ch != '&' && ch != '<' && ch != '>';
+      textInXhtmlSafe[ch] = safe;
+      textInXhtmlAttributeSafe[ch] = safe && ch != '"' && ch != '\'';
+    }
+    byte[] amp = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    byte[] lt = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    byte[] gt = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    textInXhtmlEntities['&'] = amp;
+    textInXhtmlEntities['<'] = lt;
+    textInXhtmlEntities['>'] = gt;
+    textInXhtmlAttributeEntities['&'] = amp;
+    textInXhtmlAttributeEntities['<'] = lt;
+    textInXhtmlAttributeEntities['>'] = gt;
+    textInXhtmlAttributeEntities['"'] = "&quot;".getBytes(StandardCharsets.US_ASCII);
+    textInXhtmlAttributeEntities['\''] = "&#39;".getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @FunctionalInterface
+  private static interface CharArrayEncoder {
+    void encode(char[] cbuf, int start, int len, Writer out) throws IOException;
+  }
+
+  @FunctionalInterface
+  private static interface CharSequenceEncoder {
+    void encode(CharSequence cs, int start, int end, Writer out) throws IOException;
+  }
+
+  /**
+   * Writes runs of safe characters directly, passing each run of other characters to the encoder.
+   * Surrogate pairs are never split, since surrogates are never safe.
+   */
+  private static void encode(
+      boolean[] safe,
+      byte[][] entities,
+      CharArrayEncoder encoder,
+      char[] cbuf,
+      int start,
+      int len
+  ) throws IOException {
+    PrintWriter out = PageContext.getOut();
+    final int end = start + len;
+    int pos = start;
+    while (pos < end) {
+      int runEnd = pos;
+      char ch;
+      while (runEnd < end && (ch = cbuf[runEnd]) < 128 && safe[ch]) {
+        runEnd++;
+      }
+      if (runEnd > pos) {
+        out.write(cbuf, pos, runEnd - pos);
+        pos = runEnd;
+      }
+      while (runEnd < end && ((ch = cbuf[runEnd]) >= 128 || !safe[ch])) {
+        runEnd++;
+      }
+      if (runEnd > pos) {
+        if (out instanceof Utf8PageWriter) {
+          encodeUtf8((Utf8PageWriter) out, entities, encoder, cbuf, pos, runEnd);
+        } else {
+          encoder.encode(cbuf, pos, runEnd - pos, out);
+        }
+        pos = runEnd;
+      }
+    }
+  }
+
+  /**
+   * Writes runs of safe characters directly, passing each run of other characters to the encoder.
+   * Surrogate pairs are never split, since surrogates are never safe.
+   */
+  private static void encode(
+      boolean[] safe,
+      byte[][] entities,
+      CharSequenceEncoder encoder,
+      CharSequence cs,
+      int start,
+      int end
+  ) throws IOException {
+    PrintWriter out = PageContext.getOut();
+    // Strings are written without creating substrings
+    final String str = (cs instanceof String) ? (String) cs : null;
+    int pos = start;
+    while (pos < end) {
+      int runEnd = pos;
+      char ch;
+      while (runEnd < end && (ch = cs.charAt(runEnd)) < 128 && safe[ch]) {
+        runEnd++;
+      }
+      if (runEnd > pos) {
+        if (str != null) {
+          out.write(str, pos, runEnd - pos);
+        } else {
+          out.append(cs, pos, runEnd);
+        }
+        pos = runEnd;
+      }
+      while (runEnd < end && ((ch = cs.charAt(runEnd)) >= 128 || !safe[ch])) {
+        runEnd++;
+      }
+      if (runEnd > pos) {
+        if (out instanceof Utf8PageWriter) {
+          encodeUtf8((Utf8PageWriter) out, entities, encoder, cs, pos, runEnd);
+        } else {
+          encoder.encode(cs, pos, runEnd, out);
+        }
+        pos = runEnd;
+      }
+    }
+  }
+
+  /**
+   * Writes a run of characters that need escaping, writing precomputed entities directly as bytes and passing
+   * all other characters to the encoder.  Entities are only for ASCII, so surrogate pairs are never split.
+   */
+  private static void encodeUtf8(
+      Utf8PageWriter out,
+      byte[][] entities,
+      CharArrayEncoder encoder,
+      char[] cbuf,
+      int pos,
+      int end
+  ) throws IOException {
+    while (pos < end) {
+      char ch = cbuf[pos];
+      byte[] entity = (ch < 128) ? entities[ch] : null;
+      if (entity != null) {
+        out.writeBytes(entity);
+        pos++;
+      } else {
+        int runEnd = pos + 1;
+        while (runEnd < end && ((ch = cbuf[runEnd]) >= 128 || entities[ch] == null)) {
+          runEnd++;
+        }
+        encoder.encode(cbuf, pos, runEnd - pos, out);
+        pos = runEnd;
+      }
+    }
+  }
+
+  /**
+   * Writes a run of characters that need escaping, writing precomputed entities directly as bytes and passing
+   * all other characters to the encoder.  Entities are only for ASCII, so surrogate pairs are never split.
+   */
+  private static void encodeUtf8(
+      Utf8PageWriter out,
+      byte[][] entities,
+      CharSequenceEncoder encoder,
+      CharSequence cs,
+      int pos,
+      int end
+  ) throws IOException {
+    while (pos < end) {
+      char ch = cs.charAt(pos);
+      byte[] entity = (ch < 128) ? entities[ch] : null;
+      if (entity != null) {
+        out.writeBytes(entity);
+        pos++;
+      } else {
+        int runEnd = pos + 1;
+        while (runEnd < end && ((ch = cs.charAt(runEnd)) >= 128 || entities[ch] == null)) {
+          runEnd++;
+        }
+        encoder.encode(cs, pos, runEnd, out);
+        pos = runEnd;
+      }
+    }
+  }
+
   public static void encodeTextInXhtmlAttribute(char ch) throws IOException {
     TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(ch, PageContext.getOut());
   }
 
   public static void encodeTextInXhtmlAttribute(char[] cbuf) throws IOException {
-    TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cbuf, PageContext.getOut());
+    encode(
+        textInXhtmlAttributeSafe,
+        textInXhtmlAttributeEntities,
+        TextInXhtmlAttributeEncoder::encodeTextInXhtmlAttribute,
+        cbuf,
+        0,
+        cbuf.length
+    );
   }
 
   public static void encodeTextInXhtmlAttribute(char[] cbuf, int start, int len) throws IOException {
-    TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cbuf, start, len, PageContext.getOut());
+    encode(
+        textInXhtmlAttributeSafe,
+        textInXhtmlAttributeEntities,
+        TextInXhtmlAttributeEncoder::encodeTextInXhtmlAttribute,
+        cbuf,
+        start,
+        len
+    );
   }
 
   public static void encodeTextInXhtmlAttribute(CharSequence cs) throws IOException {
-    TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cs, PageContext.getOut());
+    if (cs == null) {
+      TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cs, PageContext.getOut());
+    } else {
+      encode(
+          textInXhtmlAttributeSafe,
+          textInXhtmlAttributeEntities,
+          TextInXhtmlAttributeEncoder::encodeTextInXhtmlAttribute,
+          cs,
+          0,
+          cs.length()
+      );
+    }
   }
 
   public static void encodeTextInXhtmlAttribute(CharSequence cs, int start, int end) throws IOException {
-    TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cs, start, end, PageContext.getOut());
+    if (cs == null) {
+      TextInXhtmlAttributeEncoder.encodeTextInXhtmlAttribute(cs, start, end, PageContext.getOut());
+    } else {
+      encode(
+          textInXhtmlAttributeSafe,
+          textInXhtmlAttributeEntities,
+          TextInXhtmlAttributeEncoder::encodeTextInXhtmlAttribute,
+          cs,
+          start,
+          end
+      );
+    }
   }
 
   public static void encodeTextInXhtml(char ch) throws IOException {
@@ -66,18 +300,54 @@ public final class PageContextEncoder {
   }
 
   public static void encodeTextInXhtml(char[] cbuf) throws IOException {
-    TextInXhtmlEncoder.encodeTextInXhtml(cbuf, PageContext.getOut());
+    encode(
+        textInXhtmlSafe,
+        textInXhtmlEntities,
+        TextInXhtmlEncoder::encodeTextInXhtml,
+        cbuf,
+        0,
+        cbuf.length
+    );
   }
 
   public static void encodeTextInXhtml(char[] cbuf, int start, int len) throws IOException {
-    TextInXhtmlEncoder.encodeTextInXhtml(cbuf, start, len, PageContext.getOut());
+    encode(
+        textInXhtmlSafe,
+        textInXhtmlEntities,
+        TextInXhtmlEncoder::encodeTextInXhtml,
+        cbuf,
+        start,
+        len
+    );
   }
 
   public static void encodeTextInXhtml(CharSequence cs) throws IOException {
-    TextInXhtmlEncoder.encodeTextInXhtml(cs, PageContext.getOut());
+    if (cs == null) {
+      TextInXhtmlEncoder.encodeTextInXhtml(cs, PageContext.getOut());
+    } else {
+      encode(
+          textInXhtmlSafe,
+          textInXhtmlEntities,
+          TextInXhtmlEncoder::encodeTextInXhtml,
+          cs,
+          0,
+          cs.length()
+      );
+    }
   }
 
   public static void encodeTextInXhtml(CharSequence cs, int start, int end) throws IOException {
-    TextInXhtmlEncoder.encodeTextInXhtml(cs, start, end, PageContext.getOut());
+    if (cs == null) {
+      TextInXhtmlEncoder.encodeTextInXhtml(cs, start, end, PageContext.getOut());
+    } else {
+      encode(
+          textInXhtmlSafe,
+          textInXhtmlEntities,
+          TextInXhtmlEncoder::encodeTextInXhtml,
+          cs,
+          start,
+          end
+      );
+    }
   }
 }
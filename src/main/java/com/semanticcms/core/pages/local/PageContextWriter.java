@@ -1,6 +1,6 @@
 /*
  * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
- * Copyright (C) 2016, 2017, 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2016, 2017, 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -192,6 +192,15 @@ public final class PageContextWriter {
     return PageContext.getOut().printf(l, format, args);
   }
 
+  /**
+   * Prints a precompiled format, which avoids parsing the format and creating a {@link java.util.Formatter} on each call.
+   */
+  public static PrintWriter printf(CompiledFormat format, Object... args) throws IOException {
+    PrintWriter out = PageContext.getOut();
+    format.print(out, args);
+    return out;
+  }
+
   public static PrintWriter format(String format, Object... args) throws IOException {
     return PageContext.getOut().format(format, args);
   }
@@ -200,6 +209,13 @@ public final class PageContextWriter {
     return PageContext.getOut().format(l, format, args);
   }
 
+  /**
+   * Prints a precompiled format, which avoids parsing the format and creating a {@link java.util.Formatter} on each call.
+   */
+  public static PrintWriter format(CompiledFormat format, Object... args) throws IOException {
+    return printf(format, args);
+  }
+
   public static PrintWriter append(CharSequence csq) throws IOException {
     return PageContext.getOut().append(csq);
   }
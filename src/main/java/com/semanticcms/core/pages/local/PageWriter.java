@@ -0,0 +1,228 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A buffered {@link PrintWriter} for rendering a page on a single thread.  Unlike {@link PrintWriter},
+ * it takes no lock on each call and writes to the response in large chunks.
+ *
+ * <p>Errors are handled as {@link PrintWriter}: the first {@link IOException} is recorded and further
+ * output is discarded.  The error is reported by {@link #checkError()} and thrown by
+ * {@link #checkIOException()}, which {@link PageContext} calls when the page context ends.</p>
+ *
+ * <p>Integers are printed without creating strings.</p>
+ *
+ * <p>Not thread-safe.</p>
+ *
+ * @see  PageContext.OutputMode#BUFFERED
+ * @see  PageContext.OutputMode#UTF8
+ */
+public abstract class PageWriter extends PrintWriter {
+
+  /**
+   * The default buffer size, in characters or bytes.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+
+  private static final String lineSeparator = System.lineSeparator();
+
+  private IOException error;
+
+  /**
+   * Reusable buffer for printing integers, large enough for {@link Long#MIN_VALUE}.
+   */
+  private final char[] digits = new char[20];
+
+  PageWriter(Writer out) {
+    super(out, false);
+  }
+
+  /**
+   * Records an error, discarding any further output.
+   */
+  final void recordError(IOException e) {
+    if (error == null) {
+      error = e;
+    }
+    setError();
+  }
+
+  /**
+   * Checks if any error has occurred, in which case all output is discarded.
+   */
+  final boolean hasError() {
+    return error != null;
+  }
+
+  /**
+   * Writes the buffer to the response, without flushing the response.
+   */
+  abstract void flushBuffer();
+
+  /**
+   * Flushes the response after the buffer has been written.
+   */
+  abstract void flushResponse() throws IOException;
+
+  /**
+   * Records any error of the response that was not thrown, such as by the container's {@link PrintWriter}.
+   * Called after the final buffer is written, when the page context owning the output ends.
+   */
+  void checkResponseError() {
+    // Errors are thrown by default
+  }
+
+  /**
+   * Throws the first error that occurred on this writer, if any.
+   *
+   * @throws  IOException  the first error
+   */
+  public final void checkIOException() throws IOException {
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  @Override
+  public final void print(int i) {
+    print((long) i);
+  }
+
+  @Override
+  public final void print(long l) {
+    // Accumulate as negative, which also handles Long.MIN_VALUE
+    final boolean negative = l < 0;
+    if (!negative) {
+      l = -l;
+    }
+    int pos = digits.length;
+    do {
+      digits[--pos] = (char) ('0' - (l % 10));
+      l /= 10;
+    } while (l != 0);
+    if (negative) {
+      digits[--pos] = '-';
+    }
+    write(digits, pos, digits.length - pos);
+  }
+
+  @Override
+  public final void write(char[] cbuf) {
+    write(cbuf, 0, cbuf.length);
+  }
+
+  @Override
+  public final void write(String s) {
+    write(s, 0, s.length());
+  }
+
+  @Override
+  public final void println() {
+    write(lineSeparator);
+  }
+
+  @Override
+  public final void println(boolean x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(char x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(int x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(long x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(float x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(double x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(char[] x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(String x) {
+    print(x);
+    println();
+  }
+
+  @Override
+  public final void println(Object x) {
+    print(String.valueOf(x));
+    println();
+  }
+
+  @Override
+  public final void flush() {
+    flushBuffer();
+    if (error == null) {
+      try {
+        flushResponse();
+      } catch (IOException e) {
+        recordError(e);
+      }
+    }
+  }
+
+  /**
+   * Flushes the buffer but does not close the response, which belongs to the container.
+   */
+  @Override
+  public final void close() {
+    flush();
+  }
+
+  @Override
+  public boolean checkError() {
+    flush();
+    return error != null;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches the directory of a {@link LocalPageRepository}, recursively, and notifies the repository of changed
+ * resources on a background daemon thread.
+ *
+ * <p>Should the thread stop unexpectedly, the repository is notified and returns to last-modified checks.</p>
+ *
+ * @see  LocalPageRepository#startWatching()
+ */
+final class ResourceWatcher implements Closeable {
+
+  private final LocalPageRepository repository;
+  private final Path root;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+  private final Thread thread;
+
+  /**
+   * @param  root  The real directory of the repository
+   */
+  ResourceWatcher(LocalPageRepository repository, Path root) throws IOException {
+    this.repository = repository;
+    this.root = root;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    try {
+      registerAll(root);
+    } catch (IOException | RuntimeException | Error e) {
+      try {
+        watchService.close();
+      } catch (IOException e2) {
+        e.addSuppressed(e2);
+      }
+      throw e;
+    }
+    thread = new Thread(this::run, ResourceWatcher.class.getName() + "(" + repository + ")");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void registerAll(Path start) throws IOException {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        WatchKey key = dir.register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY
+        );
+        directories.put(key, dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Converts a file to the resource path used by the servlet context.
+   */
+  private String toResourcePath(Path file) {
+    StringBuilder resourcePath = new StringBuilder(repository.getPrefix());
+    for (Path name : root.relativize(file)) {
+      resourcePath.append('/').append(name.toString());
+    }
+    return resourcePath.toString();
+  }
+
+  /**
+   * Stops watching a deleted or moved directory and all directories within it.  Watch keys may remain valid
+   * after a directory is moved, and would then report changes under its old path.
+   *
+   * @return  {@code true} when the directory was being watched
+   */
+  private boolean unregisterAll(Path deleted) {
+    boolean found = false;
+    for (Map.Entry<WatchKey, Path> entry : directories.entrySet()) {
+      if (entry.getValue().startsWith(deleted)) {
+        entry.getKey().cancel();
+        directories.remove(entry.getKey());
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  private void handle(Path dir, WatchEvent<?> event) {
+    WatchEvent.Kind<?> kind = event.kind();
+    if (kind == StandardWatchEventKinds.OVERFLOW || dir == null) {
+      repository.resourcesOverflowed();
+    } else {
+      Path file = dir.resolve((Path) event.context());
+      if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+        try {
+          registerAll(file);
+        } catch (IOException e) {
+          // Changes within the new directory might be missed
+          repository.resourcesOverflowed();
+        }
+      }
+      String resourcePath = toResourcePath(file);
+      if (kind == StandardWatchEventKinds.ENTRY_DELETE && unregisterAll(file)) {
+        // No events are reported for the resources within a deleted or moved directory
+        repository.resourceDirectoryDeleted(resourcePath);
+      }
+      repository.resourceChanged(resourcePath, kind == StandardWatchEventKinds.ENTRY_CREATE);
+    }
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Path dir = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+          try {
+            handle(dir, event);
+          } catch (ClosedWatchServiceException e) {
+            throw e;
+          } catch (RuntimeException e) {
+            // Invalidation may have been incomplete, such as from a failing capture cache
+            repository.resourcesOverflowed();
+          }
+        }
+        if (!key.reset()) {
+          directories.remove(key);
+        }
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // Stopped
+    } finally {
+      repository.watcherStopped(this);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    thread.interrupt();
+    watchService.close();
+  }
+}
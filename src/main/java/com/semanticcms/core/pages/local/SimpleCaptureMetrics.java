@@ -0,0 +1,185 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import com.aoapps.net.Path;
+import com.semanticcms.core.pages.CaptureLevel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link CaptureMetrics} with overall counters and a timer per page path, intended to be
+ * polled by a monitoring system or inspected to find the slowest pages.
+ */
+public class SimpleCaptureMetrics implements CaptureMetrics {
+
+  /**
+   * Accumulates the count, total time, and maximum time of a series of captures.
+   */
+  public static class Timer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    /**
+     * Gets the mean time per capture, in nanoseconds, or {@code 0} when nothing captured.
+     */
+    public long getMeanNanos() {
+      long c = getCount();
+      return c == 0 ? 0 : getTotalNanos() / c;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", meanNanos=" + getMeanNanos() + ", maxNanos=" + getMaxNanos();
+    }
+  }
+
+  private final Timer captures = new Timer();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder discarded = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final ConcurrentMap<Path, Timer> pageTimers = new ConcurrentHashMap<>();
+
+  @Override
+  public void captured(LocalPageRepository repository, Path path, CaptureLevel level, long nanos, boolean skipped, long discarded) {
+    captures.record(nanos);
+    pageTimers.computeIfAbsent(path, p -> new Timer()).record(nanos);
+    if (skipped) {
+      this.skipped.increment();
+    }
+    this.discarded.add(discarded);
+  }
+
+  @Override
+  public void failed(LocalPageRepository repository, Path path, CaptureLevel level, long nanos, Throwable cause) {
+    failures.increment();
+  }
+
+  @Override
+  public void cacheHit(LocalPageRepository repository, Path path, CaptureLevel level) {
+    cacheHits.increment();
+  }
+
+  @Override
+  public void cacheMiss(LocalPageRepository repository, Path path, CaptureLevel level) {
+    cacheMisses.increment();
+  }
+
+  /**
+   * Gets the timer for all successful captures.
+   */
+  public Timer getCaptures() {
+    return captures;
+  }
+
+  /**
+   * Gets the timer for a single page or {@code null} when never captured.
+   */
+  public Timer getPageTimer(Path path) {
+    return pageTimers.get(path);
+  }
+
+  /**
+   * Gets the paths of the pages with the greatest maximum capture time, slowest first.
+   */
+  public List<Path> getSlowestPages(int limit) {
+    // Snapshot the times, since they may change while sorting
+    List<Map.Entry<Path, Long>> maxNanos = new ArrayList<>(pageTimers.size());
+    for (Map.Entry<Path, Timer> entry : pageTimers.entrySet()) {
+      maxNanos.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getMaxNanos()));
+    }
+    maxNanos.sort(Map.Entry.<Path, Long>comparingByValue().reversed());
+    List<Path> paths = new ArrayList<>(Math.min(limit, maxNanos.size()));
+    for (Map.Entry<Path, Long> entry : maxNanos) {
+      if (paths.size() >= limit) {
+        break;
+      }
+      paths.add(entry.getKey());
+    }
+    return paths;
+  }
+
+  public long getSkipped() {
+    return skipped.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /**
+   * Gets the total amount of direct output discarded by captures.
+   */
+  public long getDiscarded() {
+    return discarded.sum();
+  }
+
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return SimpleCaptureMetrics.class.getSimpleName()
+        + "(captures=(" + captures
+        + "), skipped=" + getSkipped()
+        + ", failures=" + getFailures()
+        + ", discarded=" + getDiscarded()
+        + ", cacheHits=" + getCacheHits()
+        + ", cacheMisses=" + getCacheMisses()
+        + ')';
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * semanticcms-core-pages-local - Support for SemanticCMS pages produced by the local servlet container.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of semanticcms-core-pages-local.
+ *
+ * semanticcms-core-pages-local is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * semanticcms-core-pages-local is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with semanticcms-core-pages-local.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.semanticcms.core.pages.local;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A {@link PageWriter} encoding characters as UTF-8 directly into a byte buffer, which is written to
+ * the response output stream.  This skips the container's writer and its character encoder.
+ *
+ * <p>Malformed surrogates are written as {@code '?'}, as done by the standard UTF-8 encoder.</p>
+ *
+ * @see  PageContext.OutputMode#UTF8
+ */
+final class Utf8PageWriter extends PageWriter {
+
+  private final OutputStream stream;
+  private final byte[] buf;
+  private int count;
+
+  /**
+   * A high surrogate waiting for its low surrogate, or {@code 0} when none.
+   */
+  private char highSurrogate;
+
+  Utf8PageWriter(OutputStream stream, int bufferSize) {
+    // Characters never reach the PrintWriter's writer
+    super(Writer.nullWriter());
+    if (bufferSize < 4) {
+      throw new IllegalArgumentException("bufferSize < 4: " + bufferSize);
+    }
+    this.stream = stream;
+    this.buf = new byte[bufferSize];
+  }
+
+  Utf8PageWriter(OutputStream stream) {
+    this(stream, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Writes the buffer, completing any pending high surrogate as {@code '?'} since its low surrogate
+   * can no longer follow.
+   */
+  @Override
+  void flushBuffer() {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      if (count == buf.length) {
+        writeBuffer();
+      }
+      buf[count++] = '?';
+    }
+    writeBuffer();
+  }
+
+  /**
+   * Writes the buffer, leaving any pending high surrogate for the next character.
+   */
+  private void writeBuffer() {
+    if (count > 0) {
+      if (!hasError()) {
+        try {
+          stream.write(buf, 0, count);
+        } catch (IOException e) {
+          recordError(e);
+        }
+      }
+      count = 0;
+    }
+  }
+
+  @Override
+  void flushResponse() throws IOException {
+    stream.flush();
+  }
+
+  /**
+   * Writes already-encoded bytes, such as precomputed entities.
+   * Must not be called between the two characters of a surrogate pair.
+   */
+  void writeBytes(byte[] bytes) {
+    int len = bytes.length;
+    if (len > buf.length - count) {
+      writeBuffer();
+    }
+    if (len > buf.length) {
+      if (!hasError()) {
+        try {
+          stream.write(bytes, 0, len);
+        } catch (IOException e) {
+          recordError(e);
+        }
+      }
+    } else {
+      System.arraycopy(bytes, 0, buf, count, len);
+      count += len;
+    }
+  }
+
+  private void writeChar(char ch) {
+    if (buf.length - count < 4) {
+      writeBuffer();
+    }
+    if (highSurrogate != 0) {
+      if (Character.isLowSurrogate(ch)) {
+        int codePoint = Character.toCodePoint(highSurrogate, ch);
+        highSurrogate = 0;
+        buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+        buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      highSurrogate = 0;
+      buf[count++] = '?';
+      if (buf.length - count < 3) {
+        writeBuffer();
+      }
+    }
+    if (ch < 0x80) {
+      buf[count++] = (byte) ch;
+    } else if (ch < 0x800) {
+      buf[count++] = (byte) (0xC0 | (ch >> 6));
+      buf[count++] = (byte) (0x80 | (ch & 0x3F));
+    } else if (Character.isHighSurrogate(ch)) {
+      highSurrogate = ch;
+    } else if (Character.isLowSurrogate(ch)) {
+      buf[count++] = '?';
+    } else {
+      buf[count++] = (byte) (0xE0 | (ch >> 12));
+      buf[count++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+      buf[count++] = (byte) (0x80 | (ch & 0x3F));
+    }
+  }
+
+  @Override
+  public void write(int c) {
+    writeChar((char) c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    final int end = off + len;
+    while (off < end) {
+      if (highSurrogate == 0) {
+        // Copy ASCII directly, up to the space remaining in the buffer
+        final int limit = Math.min(end, off + (buf.length - count));
+        char ch;
+        while (off < limit && (ch = cbuf[off]) < 0x80) {
+          buf[count++] = (byte) ch;
+          off++;
+        }
+        if (off == end) {
+          break;
+        }
+        if (count == buf.length) {
+          writeBuffer();
+          continue;
+        }
+      }
+      writeChar(cbuf[off++]);
+    }
+  }
+
+  @Override
+  public void write(String s, int off, int len) {
+    final int end = off + len;
+    while (off < end) {
+      if (highSurrogate == 0) {
+        // Copy ASCII directly, up to the space remaining in the buffer
+        final int limit = Math.min(end, off + (buf.length - count));
+        char ch;
+        while (off < limit && (ch = s.charAt(off)) < 0x80) {
+          buf[count++] = (byte) ch;
+          off++;
+        }
+        if (off == end) {
+          break;
+        }
+        if (count == buf.length) {
+          writeBuffer();
+          continue;
+        }
+      }
+      writeChar(s.charAt(off++));
+    }
+  }
+}